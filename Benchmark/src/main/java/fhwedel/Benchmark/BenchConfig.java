@@ -0,0 +1,26 @@
+package fhwedel.Benchmark;
+
+/**
+ * Verbindungsdaten der Benchmarks; Standardwerte passen zur Umgebung aus {@code .devcontainer}.
+ */
+final class BenchConfig {
+
+    static final String MARIADB_URL  = getenvOr("MARIADB_URL", "jdbc:mariadb://localhost:3306/firma");
+    static final String MARIADB_USER = getenvOr("MARIADB_USER", "root");
+    static final String MARIADB_PASS = getenvOr("MARIADB_PASS", "password");
+    static final String MONGO_URI    = getenvOr("MONGO_URI", "mongodb://localhost:27017");
+
+    /** Eigene Mongo-Datenbank, damit die Benchmarks die Übungsdaten nicht verändern. */
+    static final String MONGO_DB     = getenvOr("BENCH_MONGO_DB", "firma_bench");
+
+    /** Erste Personalnummer der Testdaten; alles ab hier wird beim Aufräumen gelöscht. */
+    static final int PNR_BASE = 100_000;
+
+    private BenchConfig() {
+    }
+
+    private static String getenvOr(String key, String def) {
+        String v = System.getenv(key);
+        return (v == null || v.isEmpty()) ? def : v;
+    }
+}
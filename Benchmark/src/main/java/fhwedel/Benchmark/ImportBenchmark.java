@@ -0,0 +1,86 @@
+package fhwedel.Benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import fhwedel.JDBC.ConnectionPool;
+import fhwedel.JDBC.Hello;
+import fhwedel.JDBC.PersonalRecord;
+import fhwedel.Mongo.CRUDclient;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kompletter Import MariaDB -&gt; MongoDB über {@link CRUDclient#runImport} im Modus full
+ * mit Merge-Join.
+ * Die Tabelle personal wird je Parametersatz um {@code rows} Testzeilen (pnr ab
+ * {@link BenchConfig#PNR_BASE}) ergänzt und danach wieder bereinigt; Ziel ist die
+ * Datenbank {@link BenchConfig#MONGO_DB}. Pool und Mongo-Client leben über den ganzen Lauf.
+ * Pipeline-Einstellungen wie beim Import über PIPELINE_*, MONGO_BATCH_SIZE, MONGO_ORDERED.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"1000", "100000"})
+    int rows;
+
+    private ConnectionPool pool;
+    private MongoClient client;
+    private MongoDatabase db;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        pool = new ConnectionPool(BenchConfig.MARIADB_URL, BenchConfig.MARIADB_USER, BenchConfig.MARIADB_PASS,
+                8, 30_000, 250);
+        try (Connection con = pool.getConnection()) {
+            cleanup(con);
+            List<PersonalRecord> daten = new ArrayList<>(1000);
+            for (int i = 0; i < rows; i++) {
+                daten.add(new PersonalRecord(BenchConfig.PNR_BASE + i, "Name" + i, "Vorname" + i,
+                        "it" + (1 + i % 5), i % 3 == 0 ? "d15" : "d13", "tkk"));
+                if (daten.size() == 1000) {
+                    Hello.addDataPersonalBatch(con, daten, 1000);
+                    daten.clear();
+                }
+            }
+            Hello.addDataPersonalBatch(con, daten, 1000);
+        }
+
+        client = MongoClients.create(BenchConfig.MONGO_URI);
+        db = client.getDatabase(BenchConfig.MONGO_DB);
+        db.drop();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws SQLException {
+        db.drop();
+        client.close();
+        try (Connection con = pool.getConnection()) {
+            cleanup(con);
+        }
+        pool.close();
+    }
+
+    private static void cleanup(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("DELETE FROM personal WHERE pnr >= ?")) {
+            ps.setInt(1, BenchConfig.PNR_BASE);
+            ps.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public void fullImport() throws Exception {
+        CRUDclient.runImport(pool::getConnection, db, "full", true);
+    }
+}
@@ -0,0 +1,108 @@
+package fhwedel.Benchmark;
+
+import fhwedel.JDBC.ConnectionPool;
+import fhwedel.JDBC.Hello;
+import fhwedel.JDBC.PersonalRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zugriffspfade aus {@link Hello} gegen die lokale MariaDB. Die Tabelle personal wird
+ * je Parametersatz um {@code rows} Testzeilen (pnr ab {@link BenchConfig#PNR_BASE})
+ * ergänzt und danach wieder bereinigt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcBenchmark {
+
+    @Param({"1000", "10000"})
+    int rows;
+
+    private ConnectionPool pool;
+    private Connection con;
+    private PrintStream console;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        pool = new ConnectionPool(BenchConfig.MARIADB_URL, BenchConfig.MARIADB_USER, BenchConfig.MARIADB_PASS);
+        con  = pool.getConnection();
+        cleanup();
+
+        List<PersonalRecord> daten = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            daten.add(new PersonalRecord(BenchConfig.PNR_BASE + i, "Name" + i, "Vorname" + i,
+                    "it" + (1 + i % 5), i % 3 == 0 ? "d15" : "d13", "tkk"));
+        }
+        Hello.addDataPersonalBatch(con, daten, 1000);
+
+        // showAll schreibt auf die Konsole: Ausgabe während der Messung verwerfen
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws SQLException {
+        System.setOut(console);
+        cleanup();
+        con.close();
+        pool.close();
+    }
+
+    private void cleanup() throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("DELETE FROM personal WHERE pnr >= ?")) {
+            ps.setInt(1, BenchConfig.PNR_BASE);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Einzel-Upsert auf eine vorhandene Testzeile. */
+    @Benchmark
+    public void addDataPersonal() {
+        int pnr = BenchConfig.PNR_BASE + (next++ % rows);
+        Hello.addDataPersonal(con, pnr, "Name", "Vorname", "it1", "d13", "tkk");
+    }
+
+    /** 1000 Upserts als Batch. */
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int addDataPersonalBatch() {
+        List<PersonalRecord> daten = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            int pnr = BenchConfig.PNR_BASE + (next++ % rows);
+            daten.add(new PersonalRecord(pnr, "Name", "Vorname", "it2", "d13", "tkk"));
+        }
+        return Hello.addDataPersonalBatch(con, daten, 1000).size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public void showAll() {
+        Hello.showAll(con, "personal");
+    }
+
+    /** 0 % Erhöhung: gleicher Zugriffspfad, ohne die Beträge über die Iterationen zu verändern. */
+    @Benchmark
+    public int raiseSalaryPercent() {
+        return Hello.raiseSalaryPercent(con, 0, "it1");
+    }
+
+    @Benchmark
+    public List<String> employeesInVerkauf() {
+        return Hello.employeesInVerkauf(con);
+    }
+}
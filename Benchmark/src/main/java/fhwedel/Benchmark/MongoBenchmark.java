@@ -0,0 +1,136 @@
+package fhwedel.Benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import fhwedel.Mongo.FirmaCrud;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * CRUD- und Aggregationspfade aus {@link FirmaCrud} gegen den lokalen mongod.
+ * Gemessen wird in der Datenbank {@link BenchConfig#MONGO_DB}, die je Parametersatz
+ * mit {@code rows} Mitarbeitern und den Gehaltsstufen neu befüllt wird.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MongoBenchmark {
+
+    @Param({"1000", "100000"})
+    int rows;
+
+    private MongoClient client;
+    private MongoDatabase db;
+    private FirmaCrud crud;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        client = MongoClients.create(BenchConfig.MONGO_URI);
+        db = client.getDatabase(BenchConfig.MONGO_DB);
+        db.drop();
+
+        List<Document> stufen = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            stufen.add(new Document("geh_stufe", "it" + i).append("betrag", 2000 + 500 * i));
+        }
+        db.getCollection("gehalt").insertMany(stufen);
+        db.getCollection("personal").createIndex(new Document("pnr", 1));
+        db.getCollection("personal").createIndex(new Document("abt_nr", 1));
+
+        crud = new FirmaCrud(db);
+        List<Document> batch = new ArrayList<>(1000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Document("pnr", BenchConfig.PNR_BASE + i)
+                    .append("name", "Name" + i).append("vorname", "Vorname" + i)
+                    .append("abt_nr", "d1" + (i % 8)).append("geh_stufe", "it" + (1 + i % 5))
+                    .append("krankenkasse", "tkk"));
+            if (batch.size() == 1000) {
+                crud.createPersonalBulk(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            crud.createPersonalBulk(batch);
+        }
+        crud.rebuildAbteilungStats();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        db.drop();
+        client.close();
+    }
+
+    private int pnr() {
+        return BenchConfig.PNR_BASE + (next++ % rows);
+    }
+
+    @Benchmark
+    public boolean createPersonal() {
+        return crud.createPersonal(pnr(), "Name", "Vorname", "d11", "it1", "tkk");
+    }
+
+    @Benchmark
+    public Document readPersonalByPnr() {
+        return crud.readPersonalByPnr(pnr());
+    }
+
+    @Benchmark
+    public List<Document> readPersonalPage() {
+        return crud.readPersonalPage(null, FirmaCrud.STAMMDATEN, pnr(), 100).items();
+    }
+
+    /** 0 % Erhöhung: gleicher Zugriffspfad, ohne die Beträge zu verändern. */
+    @Benchmark
+    public int[] updateGehaltPercent() {
+        return crud.updateGehaltPercent("it1", 0.0);
+    }
+
+    @Benchmark
+    public Object updatePersonal() {
+        return crud.updatePersonal(pnr(), "d1" + (next % 8), null, null);
+    }
+
+    @Benchmark
+    public int listPersonalInAbteilung() {
+        return crud.listPersonalInAbteilung("d13").size();
+    }
+
+    @Benchmark
+    public List<Document> streamPersonalInAbteilung() {
+        try (var s = crud.streamPersonalInAbteilung("d13", FirmaCrud.STAMMDATEN)) {
+            return s.collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    public List<Document> countPersonalByAbteilung() {
+        return crud.countPersonalByAbteilung();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public void rebuildAbteilungStats() {
+        crud.rebuildAbteilungStats();
+    }
+
+    /** Löschen und sofort wieder anlegen, damit die Datenmenge konstant bleibt. */
+    @Benchmark
+    public boolean deleteAndRecreate() {
+        int pnr = pnr();
+        crud.deletePersonalByPnr(pnr);
+        return crud.createPersonal(pnr, "Name", "Vorname", "d12", "it2", "tkk");
+    }
+}
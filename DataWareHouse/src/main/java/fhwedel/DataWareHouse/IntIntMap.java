@@ -0,0 +1,91 @@
+package fhwedel.DataWareHouse;
+
+import java.util.Arrays;
+
+/**
+ * Hash-Map von int auf int mit offener Adressierung (lineares Sondieren) für
+ * Schlüsselauflösungen beim Laden, z. B. pnr -> mitarbeiter_id. Keine Boxing-Objekte
+ * und keine Einträge auf dem Heap: zwei int-Arrays, Auflösung ohne Allokation.
+ * Nicht thread-safe.
+ */
+final class IntIntMap {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * @param expected erwartete Anzahl Einträge
+     */
+    IntIntMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[cap];
+        values = new int[cap];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @param key Schlüssel (nicht {@link Integer#MIN_VALUE})
+     * @param value Wert
+     */
+    void put(int key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Schlüssel " + key + " nicht erlaubt");
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int i = slot(key, keys);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    /**
+     * @param key Schlüssel
+     * @param missing Rückgabe, wenn der Schlüssel fehlt
+     * @return Wert oder missing
+     */
+    int get(int key, int missing) {
+        int i = slot(key, keys);
+        return keys[i] == key && key != EMPTY ? values[i] : missing;
+    }
+
+    /** @return Anzahl Einträge */
+    int size() {
+        return size;
+    }
+
+    private static int slot(int key, int[] keys) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = slot(oldKeys[j], keys);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
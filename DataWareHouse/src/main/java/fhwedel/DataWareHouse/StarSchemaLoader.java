@@ -0,0 +1,236 @@
+package fhwedel.DataWareHouse;
+
+import fhwedel.JDBC.ConnectionPool;
+import fhwedel.JDBC.StreamingQuery;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lädt das Stern-Schema aus {@code sternschema_gehalt.sql} vollständig neu aus
+ * gehaltszahlung, personal, abteilung und gehalt:
+ * <ol>
+ *   <li>dim_zeit: ein Tag je Zeile für den Zeitraum der Zahlungen; zeit_id wird
+ *       fortlaufend vergeben, die Auflösung ist also reine Arithmetik auf dem Datum</li>
+ *   <li>dim_mitarbeiter: ein Durchlauf über personal mit Abteilungsname und Grundgehalt,
+ *       pnr -> mitarbeiter_id landet in einer {@link IntIntMap}</li>
+ *   <li>fact_gehalt: gehaltszahlung wird gestreamt, die Schlüssel im Speicher aufgelöst
+ *       (kein Join je Zeile) und als JDBC-Batches geschrieben</li>
+ * </ol>
+ * Gelesen und geschrieben wird über zwei Verbindungen, weil ein offener streamender
+ * Cursor die Verbindung blockiert (siehe {@link StreamingQuery}). Mit {@code useBulkStmts}
+ * (vom {@link ConnectionPool} gesetzt) geht jeder Batch als ein Bulk-Kommando an den Server.
+ */
+public final class StarSchemaLoader {
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+
+    /**
+     * @param pool Verbindungen zur Datenbank mit Quell- und Zieltabellen
+     * @param batchSize Zeilen je executeBatch und Commit
+     */
+    public StarSchemaLoader(ConnectionPool pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize muss >= 1 sein");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Leert die Zieltabellen und lädt sie neu. Committet wird je Batch; schlägt das Laden
+     * fehl, wird nur der offene Batch zurückgerollt und die Tabellen bleiben teilweise
+     * befüllt, bis ein erneuter Aufruf sie wieder leert und vollständig lädt.
+     * @return geschriebene Zeilen je Tabelle, dazu "uebersprungen" für Zahlungen ohne Mitarbeiter
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    public Map<String, Long> load() throws SQLException {
+        Map<String, Long> out = new LinkedHashMap<>();
+        try (Connection reader = pool.getConnection();
+             Connection writer = pool.getConnection()) {
+            boolean autoCommit = writer.getAutoCommit();
+            boolean ok = false;
+            try {
+                try (Statement st = writer.createStatement()) {
+                    // Schlüssel stammen aus den eben geladenen Dimensionen, Prüfungen je Zeile sparen
+                    st.execute("SET SESSION foreign_key_checks = 0, unique_checks = 0");
+                    st.execute("TRUNCATE TABLE fact_gehalt");
+                    st.execute("TRUNCATE TABLE dim_mitarbeiter");
+                    st.execute("TRUNCATE TABLE dim_zeit");
+                }
+                writer.setAutoCommit(false);
+                LocalDate[] range = dateRange(reader);
+                if (range == null) {
+                    System.out.println("[DWH] gehaltszahlung ist leer");
+                    ok = true;
+                    return out;
+                }
+                out.put("dim_zeit", timed("dim_zeit", () -> loadDimZeit(writer, range[0], range[1])));
+
+                IntIntMap mitarbeiter = new IntIntMap(1024);
+                out.put("dim_mitarbeiter", timed("dim_mitarbeiter", () -> loadDimMitarbeiter(reader, writer, mitarbeiter)));
+
+                long[] skipped = new long[1];
+                out.put("fact_gehalt", timed("fact_gehalt",
+                        () -> loadFacts(reader, writer, mitarbeiter, range[0], skipped)));
+                out.put("uebersprungen", skipped[0]);
+                if (skipped[0] > 0) {
+                    System.out.println("[WARN] " + skipped[0] + " Zahlung(en) ohne Mitarbeiter in personal übersprungen");
+                }
+                ok = true;
+            } finally {
+                if (!ok && !writer.getAutoCommit()) {
+                    writer.rollback();
+                }
+                writer.setAutoCommit(autoCommit);
+                try (Statement st = writer.createStatement()) {
+                    st.execute("SET SESSION foreign_key_checks = 1, unique_checks = 1");
+                }
+            }
+        }
+        return out;
+    }
+
+    private long loadDimZeit(Connection writer, LocalDate from, LocalDate to) throws SQLException {
+        String sql = "INSERT INTO dim_zeit (zeit_id, datum, jahr, monat, quartal, wochentag_name) VALUES (?,?,?,?,?,?)";
+        long n = 0;
+        try (PreparedStatement ps = writer.prepareStatement(sql)) {
+            for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                ps.setInt(1, zeitId(from, d));
+                ps.setDate(2, Date.valueOf(d));
+                ps.setInt(3, d.getYear());
+                ps.setInt(4, d.getMonthValue());
+                ps.setInt(5, (d.getMonthValue() - 1) / 3 + 1);
+                ps.setString(6, d.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.GERMAN));
+                ps.addBatch();
+                if (++n % batchSize == 0) {
+                    flush(ps, writer);
+                }
+            }
+            flush(ps, writer);
+        }
+        return n;
+    }
+
+    private long loadDimMitarbeiter(Connection reader, Connection writer, IntIntMap ids) throws SQLException {
+        String select =
+                "SELECT p.pnr, p.name, p.vorname, p.geh_stufe, g.betrag, p.abt_nr, a.name " +
+                "FROM personal p " +
+                "LEFT JOIN gehalt g ON g.geh_stufe = p.geh_stufe " +
+                "LEFT JOIN abteilung a ON a.abt_nr = p.abt_nr " +
+                "ORDER BY p.pnr";
+        String insert =
+                "INSERT INTO dim_mitarbeiter (mitarbeiter_id, pnr, name, vorname, geh_stufe, grundgehalt, abt_nr, abteilung) " +
+                "VALUES (?,?,?,?,?,?,?,?)";
+        int id = 0;
+        try (Statement st = StreamingQuery.createStatement(reader);
+             ResultSet rs = st.executeQuery(select);
+             PreparedStatement ps = writer.prepareStatement(insert)) {
+            while (rs.next()) {
+                int pnr = rs.getInt(1);
+                ids.put(pnr, ++id);
+                ps.setInt(1, id);
+                ps.setInt(2, pnr);
+                ps.setString(3, rs.getString(2));
+                ps.setString(4, rs.getString(3));
+                ps.setString(5, rs.getString(4));
+                ps.setObject(6, rs.getObject(5));
+                ps.setString(7, rs.getString(6));
+                ps.setString(8, rs.getString(7));
+                ps.addBatch();
+                if (id % batchSize == 0) {
+                    flush(ps, writer);
+                }
+            }
+            flush(ps, writer);
+        }
+        return id;
+    }
+
+    private long loadFacts(Connection reader, Connection writer, IntIntMap mitarbeiter,
+                           LocalDate from, long[] skipped) throws SQLException {
+        String select = "SELECT pnr, zahlungsdatum, gehalt_betrag, bemerkung FROM gehaltszahlung ORDER BY gz_id";
+        String insert = "INSERT INTO fact_gehalt (mitarbeiter_id, zeit_id, betrag, bemerkung) VALUES (?,?,?,?)";
+        long n = 0;
+        try (Statement st = StreamingQuery.createStatement(reader);
+             ResultSet rs = st.executeQuery(select);
+             PreparedStatement ps = writer.prepareStatement(insert)) {
+            while (rs.next()) {
+                int mid = mitarbeiter.get(rs.getInt(1), 0);
+                if (mid == 0) {
+                    skipped[0]++;
+                    continue;
+                }
+                ps.setInt(1, mid);
+                ps.setInt(2, zeitId(from, rs.getDate(2).toLocalDate()));
+                ps.setInt(3, rs.getInt(3));
+                ps.setString(4, rs.getString(4));
+                ps.addBatch();
+                if (++n % batchSize == 0) {
+                    flush(ps, writer);
+                }
+            }
+            flush(ps, writer);
+        }
+        return n;
+    }
+
+    /** zeit_id = Tage seit dem ersten Tag des Zeitraums + 1. */
+    static int zeitId(LocalDate from, LocalDate d) {
+        return Math.toIntExact(d.toEpochDay() - from.toEpochDay()) + 1;
+    }
+
+    private static LocalDate[] dateRange(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(zahlungsdatum), MAX(zahlungsdatum) FROM gehaltszahlung")) {
+            rs.next();
+            Date min = rs.getDate(1);
+            return min == null ? null : new LocalDate[]{min.toLocalDate(), rs.getDate(2).toLocalDate()};
+        }
+    }
+
+    private static void flush(PreparedStatement ps, Connection con) throws SQLException {
+        ps.executeBatch();
+        con.commit();
+    }
+
+    private interface Step {
+        long run() throws SQLException;
+    }
+
+    private static long timed(String table, Step step) throws SQLException {
+        long t0 = System.nanoTime();
+        long n = step.run();
+        long dt = System.nanoTime() - t0;
+        System.out.printf("[DWH] %s: %d Zeilen in %.1f ms (%.0f Zeilen/s)%n",
+                table, n, dt / 1e6, dt == 0 ? 0 : n * 1e9 / dt);
+        return n;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        String url  = getenvOr("MARIADB_URL", "jdbc:mariadb://localhost:3306/firma");
+        String user = getenvOr("MARIADB_USER", "root");
+        String pass = getenvOr("MARIADB_PASS", "password");
+        int batch   = Integer.parseInt(getenvOr("DWH_BATCH_SIZE", "5000"));
+
+        try (ConnectionPool pool = new ConnectionPool(url, user, pass, 2, 30_000, 16)) {
+            Map<String, Long> n = new StarSchemaLoader(pool, batch).load();
+            System.out.println("[OK] Stern-Schema geladen: " + n);
+        }
+    }
+
+    private static String getenvOr(String key, String def) {
+        String v = System.getenv(key);
+        return (v == null || v.isEmpty()) ? def : v;
+    }
+}
@@ -0,0 +1,23 @@
+package fhwedel.DataWareHouse;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class IntIntMapTest {
+
+    @Test
+    public void testPutGetUndWachsen() {
+        IntIntMap m = new IntIntMap(2);
+        for (int pnr = -50; pnr < 5000; pnr += 7) {
+            m.put(pnr, pnr * 3);
+        }
+        m.put(14, 1);
+
+        assertEquals(723, m.size());
+        assertEquals(1, m.get(14, 0));
+        assertEquals(-150, m.get(-50, 0));
+        assertEquals(0, m.get(15, 0));
+        assertEquals(-1, m.get(Integer.MIN_VALUE, -1));
+    }
+}
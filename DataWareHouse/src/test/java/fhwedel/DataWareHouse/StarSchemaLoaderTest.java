@@ -0,0 +1,18 @@
+package fhwedel.DataWareHouse;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class StarSchemaLoaderTest {
+
+    @Test
+    public void testZeitIdFortlaufend() {
+        LocalDate von = LocalDate.of(2023, 1, 31);
+        assertEquals(1, StarSchemaLoader.zeitId(von, von));
+        assertEquals(30, StarSchemaLoader.zeitId(von, LocalDate.of(2023, 3, 1)));
+        assertEquals(366, StarSchemaLoader.zeitId(von, LocalDate.of(2024, 1, 31)));
+    }
+}
@@ -9,15 +9,23 @@ CREATE TABLE dim_zeit (
   jahr SMALLINT,
   monat TINYINT,
   quartal TINYINT,
-  wochentag_name VARCHAR(10)
+  wochentag_name VARCHAR(10),
+  UNIQUE KEY uk_dim_zeit_datum (datum)
 );
 
 -- Mitarbeiterdimension
 DROP TABLE IF EXISTS dim_mitarbeiter;
 
 CREATE TABLE dim_mitarbeiter (
-  mitarbeiter_id INT AUTO_INCREMENT PRIMARY KEY
-  -- hier bitte die Attributdefinitionen einsetzen
+  mitarbeiter_id INT AUTO_INCREMENT PRIMARY KEY,
+  pnr INT NOT NULL,
+  name CHAR(20) NOT NULL,
+  vorname CHAR(20),
+  geh_stufe VARCHAR(4),
+  grundgehalt SMALLINT,
+  abt_nr CHAR(3),
+  abteilung CHAR(20),
+  UNIQUE KEY uk_dim_mitarbeiter_pnr (pnr)
 );
 
 -- Faktentabelle: Gehaltszahlung
@@ -0,0 +1,367 @@
+package fhwedel.JDBC;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Beschränkter Connection-Pool für MariaDB als Ersatz für einzelne
+ * {@link DriverManager#getConnection}-Aufrufe pro Vorgang.
+ * <ul>
+ *   <li>höchstens {@code maxSize} gleichzeitig ausgeliehene Verbindungen,
+ *       weitere Aufrufer warten bis zu {@code borrowTimeoutMs}</li>
+ *   <li>Prüfung beim Ausleihen per {@link Connection#isValid(int)}, wenn die
+ *       Verbindung länger als {@link #VALIDATION_BYPASS_MS} ungenutzt war</li>
+ *   <li>Prepared-Statement-Cache je Verbindung über die Treiberoptionen
+ *       {@code useServerPrepStmts}/{@code cachePrepStmts}: wiederholte
+ *       {@code prepareStatement(sql)} sparen auch über Ausleihen hinweg den PREPARE-Roundtrip; mit
+ *       {@code useBulkStmts} gehen JDBC-Batches als ein Bulk-Kommando an den Server</li>
+ *   <li>bei der Rückgabe werden offene Transaktion, Auto-Commit, Isolationslevel, Read-Only
+ *       und Katalog zurückgesetzt, soweit der Ausleiher sie geändert hat. Nur wenn er
+ *       Sitzungszustand per SQL geändert hat ({@code SET}, {@code USE}, {@code LOCK TABLES},
+ *       temporäre Tabellen), folgt ein {@code COM_RESET_CONNECTION}; das verwirft auch die
+ *       vorbereiteten Statements dieser Verbindung</li>
+ *   <li>Kennzahlen: aktive/freie Verbindungen, Wartezeit und Ausleihlatenz</li>
+ * </ul>
+ * {@code close()} auf einer ausgeliehenen Verbindung gibt sie an den Pool zurück.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    /** Frisch zurückgegebene Verbindungen werden ohne Ping wieder ausgeliehen. */
+    public static final long VALIDATION_BYPASS_MS = 500;
+
+    private static final int VALIDATION_TIMEOUT_S = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<Entry> idle = new LinkedBlockingDeque<>();
+    private volatile boolean closed;
+
+    private final AtomicInteger active     = new AtomicInteger();
+    private final AtomicInteger open       = new AtomicInteger();
+    private final AtomicLong borrows       = new AtomicLong();
+    private final AtomicLong created       = new AtomicLong();
+    private final AtomicLong waitNanos     = new AtomicLong();
+    private final AtomicLong maxWaitNanos  = new AtomicLong();
+    private final AtomicLong borrowNanos   = new AtomicLong();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+    private final AtomicLong resets        = new AtomicLong();
+
+    /** SQL, das Sitzungszustand über die Ausleihe hinaus ändert. */
+    private static final Pattern SESSION_SQL = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(?:SET|USE|LOCK|CREATE\\s+(?:OR\\s+REPLACE\\s+)?TEMPORARY)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * Erstellt einen Pool mit 8 Verbindungen, 30 s Wartezeit und 250 gecachten Statements je Verbindung.
+     * @param url die JDBC-URL
+     * @param user DB-Benutzername
+     * @param password DB-Passwort
+     */
+    public ConnectionPool(String url, String user, String password) {
+        this(url, user, password, 8, 30_000, 250);
+    }
+
+    /**
+     * Erstellt einen Pool. Verbindungen werden erst bei Bedarf geöffnet.
+     * @param url die JDBC-URL
+     * @param user DB-Benutzername
+     * @param password DB-Passwort
+     * @param maxSize maximale Anzahl gleichzeitig ausgeliehener Verbindungen
+     * @param borrowTimeoutMs maximale Wartezeit beim Ausleihen
+     * @param statementCacheSize gecachte Prepared Statements je Verbindung
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int maxSize, long borrowTimeoutMs, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize muss >= 1 sein");
+        }
+        this.url = url + (url.contains("?") ? "&" : "?")
+                + "useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=" + statementCacheSize
+                + "&useBulkStmts=true&useResetConnection=true&connectTimeout=5000";
+        this.user            = user;
+        this.password        = password;
+        this.maxSize         = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits         = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Leiht eine Verbindung aus; {@code close()} gibt sie zurück.
+     * @return geprüfte Verbindung
+     * @throws SQLTransientConnectionException wenn innerhalb der Wartezeit keine Verbindung frei wird
+     * @throws SQLException bei SQL-Fehlern beim Öffnen einer neuen Verbindung
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Pool ist geschlossen");
+        }
+
+        long t0 = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Keine freie Verbindung nach " + borrowTimeoutMs + " ms (max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Warten auf Verbindung unterbrochen", e);
+        }
+        record(waitNanos, maxWaitNanos, System.nanoTime() - t0);
+
+        try {
+            Entry e = takeValid();
+            active.incrementAndGet();
+            borrows.incrementAndGet();
+            record(borrowNanos, maxBorrowNanos, System.nanoTime() - t0);
+            return lease(e);
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private Entry takeValid() throws SQLException {
+        Entry e;
+        while ((e = idle.pollFirst()) != null) {
+            boolean fresh = System.currentTimeMillis() - e.returnedAt < VALIDATION_BYPASS_MS;
+            if (fresh || e.physical.isValid(VALIDATION_TIMEOUT_S)) {
+                return e;
+            }
+            discard(e);
+        }
+
+        Connection c = DriverManager.getConnection(url, user, password);
+        open.incrementAndGet();
+        created.incrementAndGet();
+        try {
+            return new Entry(c);
+        } catch (SQLException ex) {
+            open.decrementAndGet();
+            c.close();
+            throw ex;
+        }
+    }
+
+    private Connection lease(Entry e) {
+        InvocationHandler h = new InvocationHandler() {
+            private boolean returned;
+
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                switch (m.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            giveBack(e);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || e.physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled[" + e.physical + "]";
+                    default:
+                        if (returned) {
+                            throw new SQLException("Verbindung wurde bereits an den Pool zurückgegeben");
+                        }
+                        switch (m.getName()) {
+                            case "setTransactionIsolation": e.isolationChanged = true; break;
+                            case "setReadOnly":             e.readOnlyChanged = true; break;
+                            case "setCatalog":
+                            case "setSchema":               e.catalogChanged = true; break;
+                            case "prepareStatement":
+                            case "prepareCall":             e.watch(args[0]); break;
+                            default:
+                        }
+                        Object r = invokeOn(e.physical, m, args);
+                        return m.getName().equals("createStatement") ? watched((Statement) r, e, (Connection) proxy) : r;
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, h);
+    }
+
+    /**
+     * Statement, das per SQL geänderten Sitzungszustand an der Verbindung vermerkt.
+     * {@code getConnection()} liefert die ausgeliehene statt der physischen Verbindung.
+     */
+    private static Statement watched(Statement st, Entry e, Connection owner) {
+        InvocationHandler h = (proxy, m, args) -> {
+            if (m.getName().equals("getConnection")) {
+                return owner;
+            }
+            if (args != null && args.length > 0 && m.getName().matches("execute.*|addBatch")) {
+                e.watch(args[0]);
+            }
+            return invokeOn(st, m, args);
+        };
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(), new Class<?>[]{Statement.class}, h);
+    }
+
+    private static Object invokeOn(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private void giveBack(Entry e) {
+        active.decrementAndGet();
+        try {
+            // Zustand des Ausleihers nicht an den nächsten weitergeben
+            if (e.sessionChanged) {
+                // ROLLBACK und COM_RESET_CONNECTION, Katalog, Read-Only und Isolation wie in der URL
+                e.physical.unwrap(org.mariadb.jdbc.Connection.class).reset();
+                resets.incrementAndGet();
+            } else {
+                if (!e.physical.getAutoCommit()) {
+                    e.physical.rollback();
+                }
+                if (e.isolationChanged) {
+                    e.physical.setTransactionIsolation(e.isolation);
+                }
+                if (e.readOnlyChanged) {
+                    e.physical.setReadOnly(e.readOnly);
+                }
+                if (e.catalogChanged) {
+                    e.physical.setCatalog(e.catalog);
+                }
+                e.physical.clearWarnings();
+            }
+            if (!e.physical.getAutoCommit()) {
+                e.physical.setAutoCommit(true);
+            }
+            e.sessionChanged = e.isolationChanged = e.readOnlyChanged = e.catalogChanged = false;
+            e.returnedAt = System.currentTimeMillis();
+            if (closed) {
+                discard(e);
+            } else {
+                idle.offerFirst(e);
+            }
+        } catch (SQLException ex) {
+            discard(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(Entry e) {
+        open.decrementAndGet();
+        try {
+            e.physical.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** @return aktuell ausgeliehene Verbindungen */
+    public int active() {
+        return active.get();
+    }
+
+    /** @return freie, geöffnete Verbindungen */
+    public int idle() {
+        return idle.size();
+    }
+
+    /** @return Anzahl der Ausleihvorgänge */
+    public long borrows() {
+        return borrows.get();
+    }
+
+    /** @return insgesamt geöffnete physische Verbindungen */
+    public long created() {
+        return created.get();
+    }
+
+    /** @return Summe der Wartezeit auf eine freie Verbindung in ms */
+    public double waitMillisTotal() {
+        return waitNanos.get() / 1e6;
+    }
+
+    /** @return mittlere Ausleihlatenz (Warten, Prüfen, ggf. Öffnen) in ms */
+    public double borrowMillisAvg() {
+        long n = borrows.get();
+        return n == 0 ? 0 : borrowNanos.get() / 1e6 / n;
+    }
+
+    /**
+     * @return Kennzahlen als einzeilige Zusammenfassung
+     */
+    public String metrics() {
+        long n = borrows.get();
+        return String.format("active=%d idle=%d open=%d max=%d borrows=%d created=%d resets=%d "
+                        + "wait(avg=%.2f ms, max=%.2f ms) borrow(avg=%.2f ms, max=%.2f ms)",
+                active.get(), idle.size(), open.get(), maxSize, n, created.get(), resets.get(),
+                n == 0 ? 0 : waitNanos.get() / 1e6 / n, maxWaitNanos.get() / 1e6,
+                borrowMillisAvg(), maxBorrowNanos.get() / 1e6);
+    }
+
+    /**
+     * Schließt alle freien Verbindungen; ausgeliehene werden bei Rückgabe geschlossen.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Entry e;
+        while ((e = idle.pollFirst()) != null) {
+            discard(e);
+        }
+    }
+
+    /** Physische Verbindung mit Rückgabezeitpunkt, Ausgangszustand und Änderungen der laufenden Ausleihe. */
+    private static final class Entry {
+        final Connection physical;
+        final int isolation;
+        final boolean readOnly;
+        final String catalog;
+        volatile long returnedAt;
+
+        boolean sessionChanged;
+        boolean isolationChanged;
+        boolean readOnlyChanged;
+        boolean catalogChanged;
+
+        Entry(Connection physical) throws SQLException {
+            this.physical   = physical;
+            this.isolation  = physical.getTransactionIsolation();
+            this.readOnly   = physical.isReadOnly();
+            this.catalog    = physical.getCatalog();
+            this.returnedAt = System.currentTimeMillis();
+        }
+
+        void watch(Object sql) {
+            if (sql instanceof String && SESSION_SQL.matcher((String) sql).find()) {
+                sessionChanged = true;
+            }
+        }
+    }
+}
@@ -1,14 +1,34 @@
 package fhwedel.JDBC;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
 
 public class Hello {
 
+    private static final String UPSERT_PERSONAL =
+            "INSERT INTO personal (pnr, name, vorname, geh_stufe, abt_nr, krankenkasse) " +
+                    "VALUES (?,?,?,?,?,?) " +
+                    "ON DUPLICATE KEY UPDATE name=VALUES(name), vorname=VALUES(vorname), " +
+                    "geh_stufe=VALUES(geh_stufe), abt_nr=VALUES(abt_nr), krankenkasse=VALUES(krankenkasse)";
+
+    /** Gehaltsstufe (siehe {@link #gehaltKey}) -> Betrag; wird von {@link #raiseSalaryPercent} invalidiert. */
+    static final ReferenceCache<String, Integer> GEHALT_CACHE = new ReferenceCache<>("gehalt", 10 * 60_000, 64);
+
+    /** Abteilungsname (getrimmt, klein geschrieben) -> abt_nr. */
+    static final ReferenceCache<String, String> ABTEILUNG_CACHE = new ReferenceCache<>("abteilung", 10 * 60_000, 256);
+
+    /** Schema -> Metadaten-Momentaufnahme; DDL muss {@link #schemaChanged} aufrufen. */
+    static final ReferenceCache<String, SchemaSnapshot> SCHEMA_CACHE = new ReferenceCache<>("schema", 10 * 60_000, 8);
 
     /**
-     * Stellt eine Verbindung zu einer Datenbank her.
+     * Stellt eine einzelne, ungepoolte Verbindung zu einer Datenbank her.
+     * Für wiederholte oder nebenläufige Zugriffe {@link ConnectionPool} verwenden.
      * @param url die JDBC-URL
      * @param userName DB-Benutzername
      * @param password DB-Passwort
@@ -48,6 +68,179 @@ public class Hello {
      */
     public static void addDataPersonal(Connection con, int pnr, String name, String vorname,
                                        String geh_stufe, String abt_nr, String krankenkasse) {
+        validatePersonal(name, vorname, geh_stufe, abt_nr, krankenkasse);
+
+        try (PreparedStatement ps = con.prepareStatement(UPSERT_PERSONAL)) {
+            ps.setInt(1, pnr);
+            ps.setString(2, name);
+            ps.setString(3, vorname);
+            ps.setString(4, geh_stufe);
+            ps.setString(5, abt_nr);
+            ps.setString(6, krankenkasse);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("INSERT/UPDATE personal fehlgeschlagen", e);
+        }
+    }
+
+
+    /**
+     * Fügt viele Datensätze in personal ein bzw. aktualisiert sie (wie {@link #addDataPersonal}),
+     * aber als JDBC-Batches: je {@code batchSize} Datensätze ein executeBatch und ein Commit.
+     * Mit {@code useBulkStmts} (vom {@link ConnectionPool} gesetzt) schickt der Treiber jeden
+     * Batch als ein Bulk-Kommando statt als Einzel-INSERTs. Er meldet dann je Zeile nur
+     * {@code SUCCESS_NO_INFO}, erfolgreiche Zeilen haben deshalb Status
+     * {@link UpsertResult.Status#OK} statt INSERTED/UPDATED/UNCHANGED; nur zeilenweise
+     * wiederholte Batches und Verbindungen ohne {@code useBulkStmts} liefern die genauen Status.
+     * Ungültige Datensätze werden gar nicht geschickt; lehnt die Datenbank einen Batch ab,
+     * wird er zurückgerollt und zeilenweise wiederholt, damit nur die fehlerhaften Zeilen fehlen.
+     *
+     * @param con offene Verbindung
+     * @param records Datensätze
+     * @param batchSize Datensätze pro Batch und Commit
+     * @return Ergebnis je Datensatz in Eingabereihenfolge
+     * @throws RuntimeException bei SQL-Fehlern außerhalb einzelner Datensätze (z. B. Commit)
+     */
+    public static List<UpsertResult> addDataPersonalBatch(Connection con, Iterable<PersonalRecord> records,
+                                                          int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize muss >= 1 sein");
+        }
+
+        List<UpsertResult> results = new ArrayList<>();
+        List<PersonalRecord> chunk = new ArrayList<>(batchSize);
+        List<Integer> chunkIndex   = new ArrayList<>(batchSize);
+
+        try {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+
+            try (PreparedStatement ps = con.prepareStatement(UPSERT_PERSONAL)) {
+                int i = 0;
+                for (PersonalRecord r : records) {
+                    try {
+                        validatePersonal(r.getName(), r.getVorname(), r.getGehStufe(),
+                                r.getAbtNr(), r.getKrankenkasse());
+                        chunk.add(r);
+                        chunkIndex.add(i);
+                        results.add(null); // wird nach dem Batch gesetzt
+                    } catch (IllegalArgumentException e) {
+                        results.add(new UpsertResult(i, r.getPnr(), UpsertResult.Status.INVALID, e.getMessage()));
+                    }
+                    i++;
+
+                    if (chunk.size() == batchSize) {
+                        executePersonalChunk(con, ps, chunk, chunkIndex, results);
+                    }
+                }
+                executePersonalChunk(con, ps, chunk, chunkIndex, results);
+            } catch (SQLException | RuntimeException e) {
+                // vor dem Zurücksetzen von Auto-Commit, das würde offene Arbeit committen
+                try { con.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+
+            return results;
+        } catch (SQLException e) {
+            throw new RuntimeException("Batch-INSERT/UPDATE personal fehlgeschlagen", e);
+        }
+    }
+
+    /**
+     * Variante von {@link #addDataPersonalBatch(Connection, Iterable, int)} für Streams;
+     * der Stream wird dabei nur einmal und ohne Zwischenspeicherung durchlaufen.
+     *
+     * @param con offene Verbindung
+     * @param records Datensätze
+     * @param batchSize Datensätze pro Batch und Commit
+     * @return Ergebnis je Datensatz in Eingabereihenfolge
+     */
+    public static List<UpsertResult> addDataPersonalBatch(Connection con, Stream<PersonalRecord> records,
+                                                          int batchSize) {
+        return addDataPersonalBatch(con, (Iterable<PersonalRecord>) records::iterator, batchSize);
+    }
+
+    /**
+     * Hilfsfunktion
+     * Schickt einen Batch, committet ihn und trägt die Ergebnisse ein. Schlägt der Batch fehl,
+     * werden die Zeilen nach einem Rollback einzeln ausgeführt.
+     */
+    private static void executePersonalChunk(Connection con, PreparedStatement ps, List<PersonalRecord> chunk,
+                                             List<Integer> chunkIndex, List<UpsertResult> results)
+            throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (PersonalRecord r : chunk) {
+                bindPersonal(ps, r);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            con.commit();
+
+            for (int k = 0; k < chunk.size(); k++) {
+                int count = k < counts.length ? counts[k] : Statement.SUCCESS_NO_INFO;
+                results.set(chunkIndex.get(k), new UpsertResult(chunkIndex.get(k), chunk.get(k).getPnr(),
+                        statusOf(count), null));
+            }
+        } catch (SQLException batchError) {
+            ps.clearBatch();
+            con.rollback();
+
+            // fehlerhafte Zeilen isolieren: jede Zeile einzeln, gemeinsamer Commit
+            for (int k = 0; k < chunk.size(); k++) {
+                PersonalRecord r = chunk.get(k);
+                UpsertResult res;
+                try {
+                    bindPersonal(ps, r);
+                    res = new UpsertResult(chunkIndex.get(k), r.getPnr(), statusOf(ps.executeUpdate()), null);
+                } catch (SQLException rowError) {
+                    res = new UpsertResult(chunkIndex.get(k), r.getPnr(), UpsertResult.Status.FAILED,
+                            rowError.getMessage());
+                }
+                results.set(chunkIndex.get(k), res);
+            }
+            con.commit();
+        } finally {
+            chunk.clear();
+            chunkIndex.clear();
+        }
+    }
+
+    /**
+     * Hilfsfunktion
+     * Übersetzt die Zeilenzahl von INSERT ... ON DUPLICATE KEY UPDATE (1 = neu, 2 = geändert,
+     * 0 = unverändert) in einen Status.
+     */
+    private static UpsertResult.Status statusOf(int count) {
+        switch (count) {
+            case 1:  return UpsertResult.Status.INSERTED;
+            case 2:  return UpsertResult.Status.UPDATED;
+            case 0:  return UpsertResult.Status.UNCHANGED;
+            default: return UpsertResult.Status.OK;
+        }
+    }
+
+    private static void bindPersonal(PreparedStatement ps, PersonalRecord r) throws SQLException {
+        ps.setInt(1, r.getPnr());
+        ps.setString(2, r.getName());
+        ps.setString(3, r.getVorname());
+        ps.setString(4, r.getGehStufe());
+        ps.setString(5, r.getAbtNr());
+        ps.setString(6, r.getKrankenkasse());
+    }
+
+    /**
+     * Hilfsfunktion
+     * Prüft die Längenregeln der Tabelle personal.
+     * @throws IllegalArgumentException bei Verletzung der Längenregeln bzw. wenn name == null
+     */
+    private static void validatePersonal(String name, String vorname, String geh_stufe,
+                                         String abt_nr, String krankenkasse) {
         if (name == null || name.length() > 20){
             throw new IllegalArgumentException("name zu lang (max 20)");
         }
@@ -67,29 +260,14 @@ public class Hello {
         if (krankenkasse != null && krankenkasse.length() > 3){
             throw new IllegalArgumentException("krankenkasse zu lang (max 3)");
         }
-
-        String sql =
-                "INSERT INTO personal (pnr, name, vorname, geh_stufe, abt_nr, krankenkasse) " +
-                        "VALUES (?,?,?,?,?,?) " +
-                        "ON DUPLICATE KEY UPDATE name=VALUES(name), vorname=VALUES(vorname), " +
-                        "geh_stufe=VALUES(geh_stufe), abt_nr=VALUES(abt_nr), krankenkasse=VALUES(krankenkasse)";
-
-        try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setInt(1, pnr);
-            ps.setString(2, name);
-            ps.setString(3, vorname);
-            ps.setString(4, geh_stufe);
-            ps.setString(5, abt_nr);
-            ps.setString(6, krankenkasse);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("INSERT/UPDATE personal fehlgeschlagen", e);
-        }
     }
 
 
     /**
      * Führt ein auf der angegebenen Tabelle aus und gibt die Zeilen auf der Konsole aus.
+     * Die Zeilen werden gestreamt gelesen (siehe {@link StreamingQuery}); Spaltennamen
+     * werden einmal aufgelöst und die Ausgabe gepuffert geschrieben.
+     * Für Exporte in Dateien {@link TableExporter} verwenden.
      * @param con offene Verbindung
      * @param tableName Tabellenname (nur vertrauenswürdig verwenden)
      * @throws RuntimeException bei SQL-Fehlern während der Abfrage
@@ -97,21 +275,26 @@ public class Hello {
     public static void showAll(Connection con, String tableName) {
         String sql = "SELECT * FROM " + tableName;
 
-        try (Statement st = con.createStatement();
+        try (Statement st = StreamingQuery.createStatement(con);
              ResultSet rs = st.executeQuery(sql)) {
             ResultSetMetaData m = rs.getMetaData();
             int c = m.getColumnCount();
 
+            String[] prefix = new String[c];
+            for (int i = 1; i <= c; i++) {
+                prefix[i - 1] = (i > 1 ? " | " : "") + m.getColumnLabel(i) + ": ";
+            }
+
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+            StringBuilder row = new StringBuilder();
             while (rs.next()) {
-                StringBuilder row = new StringBuilder();
+                row.setLength(0);
                 for (int i = 1; i <= c; i++) {
-                    row.append(m.getColumnLabel(i)).append(": ").append(rs.getString(i));
-                    if (i < c){
-                        row.append(" | ");
-                    }
+                    row.append(prefix[i - 1]).append(rs.getString(i));
                 }
-                System.out.println(row);
+                out.println(row);
             }
+            out.flush();
 
         } catch (SQLException e) {
             throw new RuntimeException("SELECT * FROM " + tableName + " fehlgeschlagen", e);
@@ -135,7 +318,9 @@ public class Hello {
             ps.setInt(1, percent);
             ps.setString(2, gehStufe);
 
-            return ps.executeUpdate();
+            int n = ps.executeUpdate();
+            GEHALT_CACHE.invalidate(gehaltKey(gehStufe));
+            return n;
 
         } catch (SQLException e) {
             throw new RuntimeException("UPDATE gehalt fehlgeschlagen", e);
@@ -144,53 +329,194 @@ public class Hello {
 
     
     /**
-     * Löscht alle Datensätze aus personal, deren name exakt passt.
+     * Löscht alle Datensätze aus personal, deren name exakt passt, samt
+     * Kindern, Prämien und Maschinen (siehe {@link Offboarding}).
      * @param con offene Verbindung
      * @param name Nachname
-     * @return gelöschte Zeilen
+     * @return gelöschte Zeilen in personal
      * @throws RuntimeException bei SQL-Fehlern
      */
     public static int deletePersonalByName(Connection con, String name) {
-        String sql = "DELETE FROM personal WHERE name = ?";
-
-        try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setString(1, name);
-            return ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("DELETE personal fehlgeschlagen", e);
-        }
+        return Offboarding.deleteByName(con, List.of(name), 1000, null).get("personal").intValue();
     }
 
    
     /**
      * Liefert alle Mitarbeiter aus der Abteilung „Verkauf“.
      * @param con offene Verbindung
-     * @return Liste im Format
+     * @return Liste im Format "pnr - name, vorname"
      * @throws RuntimeException bei SQL-Fehlern
      */
     public static List<String> employeesInVerkauf(Connection con) {
-        String sql =
-                "SELECT p.pnr, p.name, p.vorname " +
-                        "FROM personal p " +
-                        "JOIN abteilung a ON a.abt_nr = p.abt_nr " +
-                        "WHERE TRIM(a.name) = 'Verkauf'";
-
         List<String> result = new ArrayList<>();
+        for (PersonalRecord p : employeesInAbteilung(con, "Verkauf")) {
+            result.add(p.toString());
+        }
+        return result;
+    }
 
-        try (Statement st = con.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
+    /**
+     * Liefert alle Mitarbeiter einer Abteilung, nach pnr sortiert.
+     * Die abt_nr kommt aus dem {@link #abtNrByName Abteilungs-Cache}; die Abfrage
+     * braucht keinen Join und nutzt den Index auf personal.abt_nr (siehe {@link #ensureIndexes}).
+     * @param con offene Verbindung
+     * @param abteilung Abteilungsname (Groß-/Kleinschreibung und Leerzeichen am Rand egal)
+     * @return Mitarbeiter (krankenkasse bleibt leer), leer bei unbekannter Abteilung
+     * @throws RuntimeException bei SQL-Fehlern
+     */
+    public static List<PersonalRecord> employeesInAbteilung(Connection con, String abteilung) {
+        String abtNr = abtNrByName(con, abteilung);
+        List<PersonalRecord> result = new ArrayList<>();
+        if (abtNr == null) {
+            return result;
+        }
 
-            while (rs.next()) {
-                result.add(rs.getInt(1) + " - " + rs.getString(2) + ", " + rs.getString(3));
+        try (PreparedStatement ps = StreamingQuery.prepare(con,
+                "SELECT pnr, name, vorname, geh_stufe, abt_nr FROM personal WHERE abt_nr = ? ORDER BY pnr")) {
+            ps.setString(1, abtNr);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new PersonalRecord(rs.getInt(1), rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getString(5), null));
+                }
             }
 
             return result;
         } catch (SQLException e) {
-            throw new RuntimeException("Abfrage Verkauf fehlgeschlagen", e);
+            throw new RuntimeException("Abfrage Abteilung " + abteilung + " fehlgeschlagen", e);
         }
     }
 
 
+    /**
+     * Liefert den Betrag einer Gehaltsstufe, gecacht (siehe {@link ReferenceCache}).
+     * @param con offene Verbindung
+     * @param gehStufe Gehaltsstufe
+     * @return Betrag oder null, falls die Stufe nicht existiert
+     * @throws RuntimeException bei SQL-Fehlern
+     */
+    public static Integer gehaltBetrag(Connection con, String gehStufe) {
+        return GEHALT_CACHE.get(gehaltKey(gehStufe), k -> {
+            try (PreparedStatement ps = con.prepareStatement("SELECT betrag FROM gehalt WHERE geh_stufe = ?")) {
+                ps.setString(1, k);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : null;
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("SELECT gehalt fehlgeschlagen", e);
+            }
+        });
+    }
+
+
+    /**
+     * Schlüssel des Gehalts-Caches: getrimmt und klein geschrieben, damit jede Schreibweise
+     * denselben Eintrag trifft. CHAR und Standard-Collation vergleichen in der Abfrage ebenso.
+     * @param gehStufe Gehaltsstufe
+     * @return Cache-Schlüssel
+     */
+    static String gehaltKey(String gehStufe) {
+        return gehStufe.strip().toLowerCase(Locale.ROOT);
+    }
+
+
+    /**
+     * Liefert die abt_nr zu einem Abteilungsnamen, gecacht (siehe {@link ReferenceCache}).
+     * Der Name wird getrimmt und klein geschrieben als Schlüssel verwendet. Die Abfrage
+     * vergleicht die Spalte unverändert, damit ein Index auf abteilung.name greift: CHAR
+     * ignoriert Leerzeichen am Ende, die Standard-Collation Groß-/Kleinschreibung.
+     * @param con offene Verbindung
+     * @param name Abteilungsname
+     * @return abt_nr oder null, falls die Abteilung nicht existiert
+     * @throws RuntimeException bei SQL-Fehlern
+     */
+    public static String abtNrByName(Connection con, String name) {
+        return ABTEILUNG_CACHE.get(name.strip().toLowerCase(Locale.ROOT), k -> {
+            try (PreparedStatement ps = con.prepareStatement("SELECT abt_nr FROM abteilung WHERE name = ?")) {
+                ps.setString(1, k);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("SELECT abteilung fehlgeschlagen", e);
+            }
+        });
+    }
+
+
+    /**
+     * Legt die Indizes für Abteilungsabfragen (personal.abt_nr, abteilung.name) und für
+     * Zugriffe auf die Kindtabellen über pnr an, falls sie fehlen. Die Prüfung kostet eine
+     * Metadaten-Abfrage, das Anlegen läuft online.
+     * @param con offene Verbindung
+     * @throws RuntimeException bei SQL-Fehlern
+     */
+    public static void ensureIndexes(Connection con) {
+        try {
+            final String schema = catalog(con);
+            if (!schema(con, schema).hasIndex("personal", "idx_personal_abt_nr")) {
+                OnlineMigration.onlineDdl(con, schema, "ALTER TABLE personal ADD INDEX idx_personal_abt_nr (abt_nr)");
+            }
+            if (!schema(con, schema).hasIndex("abteilung", "idx_abteilung_name")) {
+                OnlineMigration.onlineDdl(con, schema, "ALTER TABLE abteilung ADD INDEX idx_abteilung_name (name)");
+            }
+            for (String child : new String[]{"kind", "praemie", "maschine"}) {
+                if (!schema(con, schema).hasIndex(child, "idx_" + child + "_pnr")) {
+                    OnlineMigration.onlineDdl(con, schema,
+                            "ALTER TABLE " + child + " ADD INDEX idx_" + child + "_pnr (pnr)");
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Indizes anlegen fehlgeschlagen", e);
+        }
+    }
+
+    /**
+     * Hilfsfunktion
+     * @return Datenbank der Verbindung (aus der JDBC-URL), für die Metadaten-Abfragen
+     * @throws SQLException wenn die Verbindung keine Datenbank ausgewählt hat
+     */
+    static String catalog(Connection con) throws SQLException {
+        String schema = con.getCatalog();
+        if (schema == null || schema.isEmpty()) {
+            throw new SQLException("Keine Datenbank ausgewählt (JDBC-URL ohne Datenbank)");
+        }
+        return schema;
+    }
+
+    /**
+     * Metadaten eines Schemas aus {@link #SCHEMA_CACHE}, beim ersten Zugriff in einem Roundtrip geladen.
+     * @param con offene Verbindung
+     * @param schema Datenbankschema
+     * @return Momentaufnahme
+     * @throws SQLException bei SQL-Fehlern
+     */
+    static SchemaSnapshot schema(Connection con, String schema) throws SQLException {
+        try {
+            return SCHEMA_CACHE.get(schema, k -> {
+                try {
+                    return SchemaSnapshot.load(con, k);
+                } catch (SQLException e) {
+                    throw new RuntimeException("SELECT information_schema fehlgeschlagen", e);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Verwirft die Momentaufnahme nach DDL; die nächste Prüfung lädt sie neu.
+     * @param schema Datenbankschema
+     */
+    static void schemaChanged(String schema) {
+        SCHEMA_CACHE.invalidate(schema);
+    }
+
     /**
      * Hilfsfunktion
      * Prüft, ob eine Spalte schema.table existiert
@@ -199,20 +525,10 @@ public class Hello {
      * @param table Tabellenname
      * @param column Spaltenname
      * @return true, wenn die Spalte existiert, sonst false
-     * @throws RuntimeException bei SQL-Fehlern
+     * @throws SQLException bei SQL-Fehlern
      */
-    private static boolean columnExists(Connection con, String schema, String table, String column) throws SQLException {
-        String q = "SELECT COUNT(*) FROM information_schema.COLUMNS " +
-                "WHERE TABLE_SCHEMA=? AND TABLE_NAME=? AND COLUMN_NAME=?";
-
-        try (PreparedStatement ps = con.prepareStatement(q)) {
-            ps.setString(1, schema);
-            ps.setString(2, table);
-            ps.setString(3, column);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next(); return rs.getInt(1) > 0;
-            }
-        }
+    static boolean columnExists(Connection con, String schema, String table, String column) throws SQLException {
+        return schema(con, schema).hasColumn(table, column);
     }
 
     /**
@@ -225,24 +541,16 @@ public class Hello {
      * @return true, wenn die Constraint existiert, sonst false
      * @throws SQLException bei SQL-Fehlern
      */
-    private static boolean fkExists(Connection con, String schema, String table, String fkName) throws SQLException {
-        String q = "SELECT COUNT(*) FROM information_schema.TABLE_CONSTRAINTS " +
-                "WHERE CONSTRAINT_SCHEMA=? AND TABLE_NAME=? AND CONSTRAINT_NAME=? AND CONSTRAINT_TYPE='FOREIGN KEY'";
-
-        try (PreparedStatement ps = con.prepareStatement(q)) {
-            ps.setString(1, schema);
-            ps.setString(2, table);
-            ps.setString(3, fkName);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next(); return rs.getInt(1) > 0;
-            }
-        }
+    static boolean fkExists(Connection con, String schema, String table, String fkName) throws SQLException {
+        return schema(con, schema).hasForeignKey(table, fkName);
     }
 
     /**
      * Migriert die Krankenkassen-Kürzel in eine Stammtabelle krankenversicherung
      * und ersetzt personal.krankenkasse durch personal.kkid inkl. FK.
      * – Idempotent und ohne Tabellen-Umbenennung.
+     * – Die DDL-Schritte committen in MariaDB implizit und sperren personal;
+     *   für große Tabellen im laufenden Betrieb {@link OnlineMigration} verwenden.
      */
     public static void migrateKrankenkasse(Connection con) {
         final String schema = "firma";
@@ -250,84 +558,89 @@ public class Hello {
             con.setAutoCommit(false);
 
             //evtl. alte Swap-Tabelle entfernen
-            try (Statement st = con.createStatement()) {
-                st.execute("DROP TABLE IF EXISTS personal_alt");
+            if (schema(con, schema).hasTable("personal_alt")) {
+                step(con, "krankenkasse", "drop personal_alt", () -> {
+                    try (Statement st = con.createStatement()) {
+                        st.execute("DROP TABLE IF EXISTS personal_alt");
+                    }
+                    schemaChanged(schema);
+                    return -1;
+                });
             }
 
-            //Stammtabelle anlegen/füllen
-            try (Statement st = con.createStatement()) {
-                st.execute(
-                        "CREATE TABLE IF NOT EXISTS krankenversicherung(" +
-                                "  kkid INT PRIMARY KEY," +
-                                "  kuerzel CHAR(3) UNIQUE NOT NULL," +
-                                "  name VARCHAR(100) NOT NULL)"
-                );
+            //Stammtabelle anlegen/füllen (nur solange noch etwas zu mappen ist)
+            boolean altSpalte = columnExists(con, schema, "personal", "krankenkasse");
+            boolean neu = !schema(con, schema).hasTable("krankenversicherung");
+            if (neu || altSpalte) {
+                step(con, "krankenkasse", "krankenversicherung", () -> fillKrankenversicherung(con));
             }
-            try (PreparedStatement ps = con.prepareStatement(
-                    "INSERT INTO krankenversicherung(kkid, kuerzel, name) VALUES (?,?,?) " +
-                            "ON DUPLICATE KEY UPDATE name=VALUES(name)")) {
-                Object[][] data = {
-                        {1,"aok","Allgemeine Ortskrankenkasse"},
-                        {2,"bak","Betriebskrankenkasse B. Braun Aesculap"},
-                        {3,"bek","Barmer Ersatzkasse"},
-                        {4,"dak","Deutsche Angestelltenkrankenkasse"},
-                        {5,"tkk","Techniker Krankenkasse"},
-                        {6,"kkh","Kaufmännische Krankenkasse"}
-                };
-                for (Object[] r : data) {
-                    ps.setInt(1,(int) r[0]);
-                    ps.setString(2,(String) r[1]);
-                    ps.setString(3,(String) r[2]);
-                    ps.addBatch();
-                }
-                ps.executeBatch();
+            if (neu) {
+                schemaChanged(schema);
             }
 
             //kkid-Spalte in personal anlegen (falls fehlt) + Index
             if (!columnExists(con, schema, "personal", "kkid")) {
-                try (Statement st = con.createStatement()) {
-                    st.execute("ALTER TABLE personal ADD COLUMN kkid INT NULL");
-                    st.execute("CREATE INDEX idx_personal_kkid ON personal(kkid)");
-                }
-            }
-
-            //Kürzel -> kkid mappen (nur leere kkid)
-            try (Statement st = con.createStatement()) {
-                st.execute(
-                        "UPDATE personal p " +
-                                "LEFT JOIN krankenversicherung kv ON kv.kuerzel = p.krankenkasse " +
-                                "SET p.kkid = kv.kkid " +
-                                "WHERE p.kkid IS NULL"
-                );
+                step(con, "krankenkasse", "add kkid", () -> {
+                    try (Statement st = con.createStatement()) {
+                        st.execute("ALTER TABLE personal ADD COLUMN kkid INT NULL");
+                        st.execute("CREATE INDEX idx_personal_kkid ON personal(kkid)");
+                    }
+                    schemaChanged(schema);
+                    return -1;
+                });
             }
 
-            //alte Spalte entfernen, wenn vorhanden
-            if (columnExists(con, schema, "personal", "krankenkasse")) {
-                try (Statement st = con.createStatement()) {
-                    st.execute("ALTER TABLE personal DROP COLUMN krankenkasse");
-                }
+            //Kürzel -> kkid mappen (nur leere kkid) und alte Spalte entfernen, wenn vorhanden
+            if (altSpalte) {
+                step(con, "krankenkasse", "map kkid", () -> {
+                    try (Statement st = con.createStatement()) {
+                        return st.executeUpdate(
+                                "UPDATE personal p " +
+                                        "LEFT JOIN krankenversicherung kv ON kv.kuerzel = p.krankenkasse " +
+                                        "SET p.kkid = kv.kkid " +
+                                        "WHERE p.kkid IS NULL"
+                        );
+                    }
+                });
+                step(con, "krankenkasse", "drop krankenkasse", () -> {
+                    try (Statement st = con.createStatement()) {
+                        st.execute("ALTER TABLE personal DROP COLUMN krankenkasse");
+                    }
+                    schemaChanged(schema);
+                    return -1;
+                });
             }
 
             //FK setzen (einmalig)
             if (!fkExists(con, schema, "personal", "fk_personal_kk")) {
-                try (Statement st = con.createStatement()) {
-                    st.execute("ALTER TABLE personal " +
-                            "ADD CONSTRAINT fk_personal_kk FOREIGN KEY (kkid) " +
-                            "REFERENCES krankenversicherung(kkid)");
-                }
+                step(con, "krankenkasse", "add fk", () -> {
+                    try (Statement st = con.createStatement()) {
+                        st.execute("ALTER TABLE personal " +
+                                "ADD CONSTRAINT fk_personal_kk FOREIGN KEY (kkid) " +
+                                "REFERENCES krankenversicherung(kkid)");
+                    }
+                    schemaChanged(schema);
+                    return -1;
+                });
             }
 
-            //Optional: kkid NOT NULL, wenn vollständig gemappt
-            try (Statement st = con.createStatement();
-                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM personal WHERE kkid IS NULL")) {
-                rs.next();
-                if (rs.getInt(1) == 0) {
-                    try (Statement st2 = con.createStatement()) {
-                        st2.execute("ALTER TABLE personal MODIFY kkid INT NOT NULL");
+            //Optional: kkid NOT NULL, wenn vollständig gemappt (und noch nicht gesetzt)
+            if (schema(con, schema).isNullable("personal", "kkid")) {
+                step(con, "krankenkasse", "kkid not null", () -> {
+                    try (Statement st = con.createStatement();
+                         ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM personal WHERE kkid IS NULL")) {
+                        rs.next();
+                        if (rs.getInt(1) == 0) {
+                            try (Statement st2 = con.createStatement()) {
+                                st2.execute("ALTER TABLE personal MODIFY kkid INT NOT NULL");
+                            }
+                            schemaChanged(schema);
+                        } else {
+                            System.out.println("Hinweis: Es gibt noch Datensätze ohne kkid – Spalte bleibt NULL-able.");
+                        }
+                        return -1;
                     }
-                } else {
-                    System.out.println("Hinweis: Es gibt noch Datensätze ohne kkid – Spalte bleibt NULL-able.");
-                }
+                });
             }
 
             con.commit();
@@ -339,13 +652,102 @@ public class Hello {
         }
     }
 
+    /**
+     * Legt die Stammtabelle krankenversicherung an (falls nötig) und füllt sie.
+     * @param con offene Verbindung
+     * @return Anzahl der geschriebenen Kassen
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    static long fillKrankenversicherung(Connection con) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute(
+                    "CREATE TABLE IF NOT EXISTS krankenversicherung(" +
+                            "  kkid INT PRIMARY KEY," +
+                            "  kuerzel CHAR(3) UNIQUE NOT NULL," +
+                            "  name VARCHAR(100) NOT NULL)"
+            );
+        }
+        try (PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO krankenversicherung(kkid, kuerzel, name) VALUES (?,?,?) " +
+                        "ON DUPLICATE KEY UPDATE name=VALUES(name)")) {
+            Object[][] data = {
+                    {1,"aok","Allgemeine Ortskrankenkasse"},
+                    {2,"bak","Betriebskrankenkasse B. Braun Aesculap"},
+                    {3,"bek","Barmer Ersatzkasse"},
+                    {4,"dak","Deutsche Angestelltenkrankenkasse"},
+                    {5,"tkk","Techniker Krankenkasse"},
+                    {6,"kkh","Kaufmännische Krankenkasse"}
+            };
+            for (Object[] r : data) {
+                ps.setInt(1,(int) r[0]);
+                ps.setString(2,(String) r[1]);
+                ps.setString(3,(String) r[2]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            return data.length;
+        }
+    }
+
+    /**
+     * Ein Migrationsschritt.
+     */
+    @FunctionalInterface
+    interface MigrationStep {
+        /** @return betroffene Zeilen oder -1 für DDL */
+        long run() throws SQLException;
+    }
+
+    /**
+     * Führt einen Migrationsschritt aus und zeichnet ihn als {@link MigrationStepEvent} auf.
+     * Die Bytes stammen aus den Sitzungszählern des Servers; sie werden nur abgefragt,
+     * wenn das Ereignis eingeschaltet ist.
+     * @param con Verbindung, auf der der Schritt läuft
+     * @param migration Name der Migration
+     * @param name Name des Schritts
+     * @param step auszuführender Schritt
+     * @throws SQLException Fehler des Schritts
+     */
+    static void step(Connection con, String migration, String name, MigrationStep step) throws SQLException {
+        MigrationStepEvent event = new MigrationStepEvent();
+        long bytesBefore = event.isEnabled() ? sessionBytes(con) : 0;
+        event.begin();
+        long rows = step.run();
+        event.end();
+        if (event.shouldCommit()) {
+            event.migration = migration;
+            event.step = name;
+            event.rows = rows;
+            event.bytes = sessionBytes(con) - bytesBefore;
+            event.commit();
+        }
+    }
+
+    /**
+     * Hilfsfunktion
+     * Summe von Bytes_received und Bytes_sent der aktuellen Sitzung.
+     */
+    private static long sessionBytes(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SHOW SESSION STATUS WHERE Variable_name IN ('Bytes_received', 'Bytes_sent')")) {
+            long bytes = 0;
+            while (rs.next()) {
+                bytes += rs.getLong(2);
+            }
+            return bytes;
+        }
+    }
+
     // Testausgabe
     public static void main(String[] args) {
         String url  = "jdbc:mariadb://localhost:3306/firma";
         String user = "root";
         String pass = "password";
 
-        try (Connection con = login(url, user, pass)) {
+        try (ConnectionPool pool = new ConnectionPool(url, user, pass);
+             Connection con = pool.getConnection()) {
+
+            ensureIndexes(con);
 
             // CREATE / UPSERT
             addDataPersonal(con, 417, "Krause", "Henrik", "it1", "d15", "tkk");
@@ -353,8 +755,15 @@ public class Hello {
             System.out.println("== personal (vor Änderungen) ==");
             showAll(con, "personal");
 
+            System.out.println("Gehalt it1 vorher: " + gehaltBetrag(con, "it1"));
             int upd = raiseSalaryPercent(con, 10, "it1");
             System.out.println("Gehaltsstufe it1 angepasst: " + upd + " Zeile(n).");
+            System.out.println("Gehalt it1 nachher: " + gehaltBetrag(con, "it1"));
+
+            var runde = SalaryAdjustment.apply(con, List.of(
+                    SalaryAdjustment.Rule.percent("it2", 3.0),
+                    new SalaryAdjustment.Rule("it3", 2.5, null, 6000)));
+            runde.forEach((stufe, an) -> System.out.println("Gehaltsrunde " + stufe + ": " + an[0] + " -> " + an[1]));
 
             int del = deletePersonalByName(con, "Tietze");
             System.out.println("Gelöscht: " + del + " Zeile(n) für 'Tietze'.");
@@ -362,15 +771,32 @@ public class Hello {
             System.out.println("MitarbeiterInnen in Abteilung 'Verkauf':");
             for (String s : employeesInVerkauf(con)) System.out.println("  " + s);
 
-            migrateKrankenkasse(con);
+            if ("online".equals(System.getenv("MIGRATION_MODE"))) {
+                OnlineMigration.migrateKrankenkasse(con,
+                        Integer.parseInt(getenvOr("MIGRATION_CHUNK", "1000")),
+                        Long.parseLong(getenvOr("MIGRATION_PAUSE_MS", "50")),
+                        !"false".equals(System.getenv("MIGRATION_CONTRACT")));
+            } else {
+                migrateKrankenkasse(con);
+            }
 
             System.out.println("== personal (nach Migration) ==");
             showAll(con, "personal"); // showAll
             System.out.println("== krankenversicherung ==");
             showAll(con, "krankenversicherung"); // showAll
 
+            System.out.println("Pool: " + pool.metrics());
+            System.out.println("Cache: " + GEHALT_CACHE.stats());
+            System.out.println("Cache: " + ABTEILUNG_CACHE.stats());
+            System.out.println("Cache: " + SCHEMA_CACHE.stats());
+
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    private static String getenvOr(String key, String def) {
+        String v = System.getenv(key);
+        return (v == null || v.isEmpty()) ? def : v;
+    }
 }
@@ -0,0 +1,97 @@
+package fhwedel.JDBC;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-freies Latenz-Histogramm mit logarithmischen Buckets (4 je Verdopplung,
+ * also höchstens 25 % relativer Fehler) von 1 µs bis ~70 min. Aufzeichnen kostet
+ * ein paar Additionen; Perzentile werden beim Lesen aus den Buckets berechnet.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 32 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count    = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Zeichnet eine Dauer auf.
+     * @param nanos Dauer in ns
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** @return Anzahl der Aufzeichnungen */
+    public long count() {
+        return count.get();
+    }
+
+    /** @return Mittelwert in ms */
+    public double meanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sumNanos.get() / 1e6 / n;
+    }
+
+    /** @return Maximum in ms */
+    public double maxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * @param p Perzentil zwischen 0 und 100
+     * @return Obergrenze des Buckets, in dem das Perzentil liegt, in ms
+     */
+    public double percentileMillis(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return Math.min(upperNanos(b), maxNanos.get()) / 1e6;
+            }
+        }
+        return maxMillis();
+    }
+
+    /**
+     * @return Kennzahlen als einzeilige Zusammenfassung
+     */
+    public String summary() {
+        return String.format("n=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f ms",
+                count(), meanMillis(), percentileMillis(50), percentileMillis(90),
+                percentileMillis(99), percentileMillis(99.9), maxMillis());
+    }
+
+    /** Bucket für eine Dauer: Zweierpotenz der µs plus Unterteilung in {@link #SUB_BUCKETS}. */
+    private static int bucketOf(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = exp < 2 ? 0 : (int) ((micros >>> (exp - 2)) & (SUB_BUCKETS - 1));
+        return Math.min(BUCKETS - 1, exp * SUB_BUCKETS + sub);
+    }
+
+    private static long upperNanos(int bucket) {
+        int exp = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        long base = 1L << exp;
+        if (exp < 2) {
+            return (base << 1) * 1000;
+        }
+        return (base + (base * (sub + 1)) / SUB_BUCKETS) * 1000;
+    }
+}
@@ -0,0 +1,36 @@
+package fhwedel.JDBC;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-Ereignis für einen Schritt einer Schema-Migration (z. B. {@link Hello#migrateKrankenkasse}).
+ * Dauer über {@code begin()}/{@code end()}, Zeilen aus dem Update-Zähler des Schritts,
+ * Bytes aus den Sitzungszählern des Servers.
+ * Aufzeichnen z. B. mit {@code -XX:StartFlightRecording}.
+ */
+@Name("fhwedel.MigrationStep")
+@Label("Migrationsschritt")
+@Category({"DBTI25", "JDBC"})
+@StackTrace(false)
+public final class MigrationStepEvent extends jdk.jfr.Event {
+
+    @Label("Migration")
+    public String migration;
+
+    @Label("Schritt")
+    public String step;
+
+    @Label("Zeilen")
+    @Description("betroffene Zeilen laut Update-Zähler, -1 für DDL")
+    public long rows;
+
+    @Label("Bytes")
+    @Description("Bytes_received + Bytes_sent der Sitzung während des Schritts, inkl. der Abfrage des Zählers")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,196 @@
+package fhwedel.JDBC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Löscht viele Mitarbeiter samt abhängigen Zeilen (kind, praemie, maschine).
+ * Die Personalnummern werden sortiert und in Chunks aufeinanderfolgender Schlüssel
+ * gelöscht, jeder Chunk in einer eigenen kurzen Transaktion; Sperren und Undo-Log
+ * bleiben so klein. Die Kindtabellen werden über ihre pnr-Indizes angesprochen
+ * (siehe {@link Hello#ensureIndexes}).
+ * Mitarbeiter, auf die weitere Tabellen per Fremdschlüssel verweisen (z. B. die
+ * Gehaltshistorie in gehaltszahlung), werden nicht gelöscht, sondern gemeldet;
+ * solche Daten unterliegen Aufbewahrungspflichten und werden hier nicht angefasst.
+ */
+public final class Offboarding {
+
+    /** Reihenfolge beim Löschen: erst die abhängigen Tabellen, dann personal. */
+    private static final String[] TABLES = {"kind", "praemie", "maschine", "personal"};
+
+    private Offboarding() {
+    }
+
+    /**
+     * Löscht Mitarbeiter anhand ihrer Nachnamen.
+     * @param con offene Verbindung (Auto-Commit wird danach wiederhergestellt)
+     * @param names Nachnamen (exakter Vergleich wie {@link Hello#deletePersonalByName})
+     * @param chunkSize Mitarbeiter je Transaktion
+     * @param afterCommit erhält nach jedem committeten Chunk dessen Personalnummern
+     *                    (z. B. für MongoDB) oder null
+     * @return gelöschte Zeilen je Tabelle
+     * @throws RuntimeException bei SQL-Fehlern
+     */
+    public static Map<String, Long> deleteByName(Connection con, Collection<String> names, int chunkSize,
+                                                 Consumer<List<Integer>> afterCommit) {
+        List<Integer> pnrs = new ArrayList<>();
+        List<String> list = new ArrayList<>(names);
+        try {
+            for (int from = 0; from < list.size(); from += 1000) {
+                List<String> part = list.subList(from, Math.min(list.size(), from + 1000));
+                try (PreparedStatement ps = con.prepareStatement(
+                        "SELECT pnr FROM personal WHERE name IN (" + placeholders(part.size()) + ")")) {
+                    for (int i = 0; i < part.size(); i++) {
+                        ps.setString(i + 1, part.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            pnrs.add(rs.getInt(1));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("SELECT personal fehlgeschlagen", e);
+        }
+        return deleteByPnr(con, pnrs, chunkSize, afterCommit);
+    }
+
+    /**
+     * Löscht Mitarbeiter anhand ihrer Personalnummern.
+     * Bricht ein Chunk ab, bleiben die vorher gelöschten Chunks gelöscht; ein erneuter
+     * Aufruf mit denselben Nummern setzt fort. {@code afterCommit} läuft deshalb direkt nach
+     * jedem Commit, damit die schon gelöschten Chunks auch bei einem Abbruch weitergegeben werden
+     * (über {@link #deleteByName} sind sie danach nicht mehr auffindbar).
+     * @param con offene Verbindung (Auto-Commit wird danach wiederhergestellt)
+     * @param pnrs Personalnummern (Duplikate und Reihenfolge egal)
+     * @param chunkSize Mitarbeiter je Transaktion
+     * @param afterCommit erhält nach jedem committeten Chunk dessen Personalnummern
+     *                    (z. B. für MongoDB) oder null
+     * Mitarbeiter mit Zeilen in anderen Tabellen, die auf personal verweisen, bleiben stehen;
+     * sie werden als {@code [WARN]} ausgegeben und nicht an {@code afterCommit} gemeldet.
+     * @return gelöschte Zeilen je Tabelle (kind, praemie, maschine, personal)
+     * @throws RuntimeException bei SQL-Fehlern
+     */
+    public static Map<String, Long> deleteByPnr(Connection con, Collection<Integer> pnrs, int chunkSize,
+                                                Consumer<List<Integer>> afterCommit) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize muss >= 1 sein");
+        }
+        Map<String, Long> deleted = new LinkedHashMap<>();
+        for (String t : TABLES) {
+            deleted.put(t, 0L);
+        }
+        List<Integer> sorted = new ArrayList<>(new TreeSet<>(pnrs));
+        if (sorted.isEmpty()) {
+            return deleted;
+        }
+
+        List<Integer> blocked = new ArrayList<>();
+        try {
+            List<String[]> references = foreignReferences(con);
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                for (int from = 0; from < sorted.size(); from += chunkSize) {
+                    List<Integer> chunk = new ArrayList<>(sorted.subList(from, Math.min(sorted.size(), from + chunkSize)));
+                    long[] n = new long[TABLES.length];
+                    try {
+                        List<Integer> referenced = referenced(con, references, chunk);
+                        chunk.removeAll(referenced);
+                        blocked.addAll(referenced);
+                        if (chunk.isEmpty()) {
+                            con.commit();
+                            continue;
+                        }
+                        String in = placeholders(chunk.size());
+                        for (int k = 0; k < TABLES.length; k++) {
+                            try (PreparedStatement ps = con.prepareStatement(
+                                    "DELETE FROM " + TABLES[k] + " WHERE pnr IN (" + in + ")")) {
+                                for (int i = 0; i < chunk.size(); i++) {
+                                    ps.setInt(i + 1, chunk.get(i));
+                                }
+                                n[k] = ps.executeUpdate();
+                            }
+                        }
+                        con.commit();
+                    } catch (SQLException e) {
+                        con.rollback();
+                        throw e;
+                    }
+                    for (int k = 0; k < TABLES.length; k++) {
+                        deleted.merge(TABLES[k], n[k], Long::sum);
+                    }
+                    if (afterCommit != null) {
+                        afterCommit.accept(Collections.unmodifiableList(chunk));
+                    }
+                }
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("DELETE personal fehlgeschlagen", e);
+        }
+
+        if (!blocked.isEmpty()) {
+            System.out.println("[WARN] nicht gelöscht, weitere Tabellen verweisen darauf: pnr " + blocked);
+        }
+        System.out.println("[DELETE] " + (sorted.size() - blocked.size()) + " Personalnummer(n): " + deleted);
+        return deleted;
+    }
+
+    /**
+     * Hilfsfunktion
+     * Tabellen und Spalten außer kind, praemie und maschine, die per Fremdschlüssel auf personal.pnr verweisen.
+     */
+    private static List<String[]> foreignReferences(Connection con) throws SQLException {
+        List<String[]> refs = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+                        "WHERE REFERENCED_TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME = 'personal' " +
+                        "AND REFERENCED_COLUMN_NAME = 'pnr' AND TABLE_NAME NOT IN ('kind', 'praemie', 'maschine')");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                refs.add(new String[]{rs.getString(1), rs.getString(2)});
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Hilfsfunktion
+     * Personalnummern des Chunks, auf die eine der Tabellen aus {@link #foreignReferences} verweist.
+     */
+    private static List<Integer> referenced(Connection con, List<String[]> references, List<Integer> chunk)
+            throws SQLException {
+        TreeSet<Integer> found = new TreeSet<>();
+        for (String[] ref : references) {
+            try (PreparedStatement ps = con.prepareStatement("SELECT DISTINCT `" + ref[1] + "` FROM `" + ref[0]
+                    + "` WHERE `" + ref[1] + "` IN (" + placeholders(chunk.size()) + ")")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setInt(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found.add(rs.getInt(1));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+}
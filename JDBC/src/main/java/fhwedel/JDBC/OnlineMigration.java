@@ -0,0 +1,367 @@
+package fhwedel.JDBC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Online-Variante von {@link Hello#migrateKrankenkasse} für große personal-Tabellen,
+ * ohne Wartungsfenster:
+ * <ul>
+ *   <li>DDL mit {@code ALGORITHM=INSTANT} bzw. {@code ALGORITHM=INPLACE, LOCK=NONE}, damit
+ *       Schreibzugriffe weiterlaufen; kurzer {@code lock_wait_timeout} mit Wiederholung, damit
+ *       ein wartendes ALTER keine Schreiber hinter sich aufstaut</li>
+ *   <li>kkid wird in Chunks entlang des Primärschlüssels befüllt, jeder Chunk ist eine eigene
+ *       kurze Transaktion; danach wird der Checkpoint in {@code migration_checkpoint} geschrieben
+ *       (in derselben Transaktion), mit Pause zwischen den Chunks</li>
+ *   <li>ein Abbruch kann jederzeit mit demselben Aufruf fortgesetzt werden</li>
+ * </ul>
+ * Zeilen, die Schreiber während des Backfills noch mit krankenkasse anlegen, holt ein
+ * Nachlauf über den Index auf kkid nach. Das Entfernen der alten Spalte samt FK und
+ * NOT NULL ({@code contract}) sollte erst laufen, wenn keine Anwendung mehr krankenkasse schreibt.
+ */
+public final class OnlineMigration {
+
+    private static final String NAME = "krankenkasse";
+
+    /** ER_ALTER_OPERATION_NOT_SUPPORTED(_REASON), Syntaxfehler bei Servern ohne INSTANT */
+    private static final Set<Integer> ALGORITHM_UNSUPPORTED = Set.of(1845, 1846, 1064);
+    private static final int LOCK_WAIT_TIMEOUT = 1205;
+
+    private OnlineMigration() {
+    }
+
+    /**
+     * Migriert krankenkasse nach kkid online und fortsetzbar.
+     * @param con offene Verbindung (Auto-Commit wird danach wiederhergestellt)
+     * @param chunkSize Zeilen je Backfill-Transaktion
+     * @param pauseMillis Pause zwischen zwei Chunks
+     * @param contract true entfernt danach krankenkasse und setzt FK und NOT NULL,
+     *                 false belässt es beim Anlegen und Befüllen von kkid
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    public static void migrateKrankenkasse(Connection con, int chunkSize, long pauseMillis,
+                                           boolean contract) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize muss >= 1 sein");
+        }
+        final String schema = Hello.catalog(con);
+        boolean autoCommit = con.getAutoCommit();
+        long lockWaitTimeout;
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT @@SESSION.lock_wait_timeout")) {
+            rs.next();
+            lockWaitTimeout = rs.getLong(1);
+        }
+        try {
+            con.setAutoCommit(true);
+            try (Statement st = con.createStatement()) {
+                st.execute("SET SESSION lock_wait_timeout = 5");
+                st.execute("CREATE TABLE IF NOT EXISTS migration_checkpoint(" +
+                        "  migration VARCHAR(64) PRIMARY KEY," +
+                        "  phase VARCHAR(16) NOT NULL," +
+                        "  last_pnr INT NULL," +
+                        "  rows_done BIGINT NOT NULL DEFAULT 0," +
+                        "  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)");
+            }
+            if ("done".equals(phase(con))) {
+                System.out.println("[MIGRATION] " + NAME + " bereits abgeschlossen.");
+                return;
+            }
+
+            boolean neu = !Hello.schema(con, schema).hasTable("krankenversicherung");
+            Hello.step(con, NAME, "krankenversicherung", () -> Hello.fillKrankenversicherung(con));
+            if (neu) {
+                Hello.schemaChanged(schema);
+            }
+
+            if (!Hello.columnExists(con, schema, "personal", "kkid")) {
+                Hello.step(con, NAME, "add kkid", () -> onlineDdl(con, schema, "ALTER TABLE personal ADD COLUMN kkid INT NULL"));
+            }
+            if (!Hello.schema(con, schema).hasIndex("personal", "idx_personal_kkid")) {
+                Hello.step(con, NAME, "add index", () ->
+                        onlineDdl(con, schema, "ALTER TABLE personal ADD INDEX idx_personal_kkid (kkid)"));
+            }
+
+            if (Hello.columnExists(con, schema, "personal", "krankenkasse")) {
+                backfill(con, chunkSize, pauseMillis);
+                Hello.step(con, NAME, "catch-up", () -> catchUp(con, chunkSize));
+            }
+            if (!contract) {
+                System.out.println("[MIGRATION] kkid befüllt; krankenkasse bleibt bis zum Aufruf mit contract=true.");
+                return;
+            }
+
+            if (Hello.columnExists(con, schema, "personal", "krankenkasse")) {
+                Hello.step(con, NAME, "catch-up", () -> catchUp(con, chunkSize));
+                Hello.step(con, NAME, "drop krankenkasse", () ->
+                        onlineDdl(con, schema, "ALTER TABLE personal DROP COLUMN krankenkasse"));
+            }
+            if (!Hello.fkExists(con, schema, "personal", "fk_personal_kk")) {
+                Hello.step(con, NAME, "add fk", () -> addForeignKey(con, schema));
+            }
+            if (Hello.schema(con, schema).isNullable("personal", "kkid")) {
+                if (countNull(con) == 0) {
+                    Hello.step(con, NAME, "kkid not null", () ->
+                            onlineDdl(con, schema, "ALTER TABLE personal MODIFY kkid INT NOT NULL"));
+                } else {
+                    System.out.println("Hinweis: Es gibt noch Datensätze ohne kkid – Spalte bleibt NULL-able.");
+                }
+            }
+            saveCheckpoint(con, "done", null, 0);
+            System.out.println("Migration (online) erfolgreich abgeschlossen.");
+        } finally {
+            con.setAutoCommit(autoCommit);
+            try (Statement st = con.createStatement()) {
+                st.execute("SET SESSION lock_wait_timeout = " + lockWaitTimeout);
+            }
+        }
+    }
+
+    /**
+     * Befüllt kkid chunkweise in pnr-Reihenfolge ab dem letzten Checkpoint.
+     */
+    private static void backfill(Connection con, int chunkSize, long pauseMillis) throws SQLException {
+        Integer last = lastPnr(con);
+        long done = rowsDone(con);
+        int[] range = pnrRange(con);
+        if (range == null) {
+            return;
+        }
+        if (last != null) {
+            System.out.println("[MIGRATION] setze Backfill nach pnr " + last + " fort (" + done + " Zeilen erledigt)");
+        }
+
+        String sqlUpper = "SELECT MAX(pnr) FROM (SELECT pnr FROM personal WHERE pnr > ? ORDER BY pnr LIMIT ?) t";
+        String sqlUpdate =
+                "UPDATE personal SET kkid = (SELECT kv.kkid FROM krankenversicherung kv " +
+                        "WHERE kv.kuerzel = personal.krankenkasse) " +
+                        "WHERE pnr > ? AND pnr <= ? AND kkid IS NULL";
+
+        long t0 = System.nanoTime();
+        long lastReport = t0;
+        long startDone = done;
+        con.setAutoCommit(false);
+        try (PreparedStatement upper = con.prepareStatement(sqlUpper);
+             PreparedStatement update = con.prepareStatement(sqlUpdate)) {
+            while (true) {
+                upper.setInt(1, last == null ? Integer.MIN_VALUE : last);
+                upper.setInt(2, chunkSize);
+                int to;
+                try (ResultSet rs = upper.executeQuery()) {
+                    rs.next();
+                    to = rs.getInt(1);
+                    if (rs.wasNull()) {
+                        break;
+                    }
+                }
+                final Integer from = last;
+                long[] n = new long[1];
+                try {
+                    Hello.step(con, NAME, "backfill", () -> {
+                        update.setInt(1, from == null ? Integer.MIN_VALUE : from);
+                        update.setInt(2, to);
+                        n[0] = update.executeUpdate();
+                        return n[0];
+                    });
+                    done += n[0];
+                    saveCheckpoint(con, "backfill", to, done);
+                    con.commit();
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw e;
+                }
+                last = to;
+
+                long now = System.nanoTime();
+                if (now - lastReport > 2_000_000_000L || to >= range[1]) {
+                    lastReport = now;
+                    double pct = range[1] == range[0] ? 100 : 100.0 * (to - range[0]) / ((long) range[1] - range[0]);
+                    System.out.printf("[MIGRATION] kkid: bis pnr %d (%.1f %%), %d Zeilen, %.0f Zeilen/s%n",
+                            to, Math.min(100, pct), done, (done - startDone) * 1e9 / (now - t0));
+                }
+                pause(pauseMillis);
+            }
+            saveCheckpoint(con, "backfilled", last, done);
+            con.commit();
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Holt Zeilen nach, die seit dem Backfill noch ohne kkid geschrieben wurden
+     * (Zugriff über den Index auf kkid, je Durchlauf höchstens chunkSize Zeilen).
+     * @return Anzahl nachgetragener Zeilen
+     */
+    private static long catchUp(Connection con, int chunkSize) throws SQLException {
+        String sql =
+                "UPDATE personal SET kkid = (SELECT kv.kkid FROM krankenversicherung kv " +
+                        "WHERE kv.kuerzel = personal.krankenkasse) " +
+                        "WHERE kkid IS NULL AND krankenkasse IN (SELECT kuerzel FROM krankenversicherung) " +
+                        "LIMIT ?";
+        long total = 0;
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setInt(1, chunkSize);
+            int n;
+            do {
+                n = ps.executeUpdate();
+                total += n;
+            } while (n == chunkSize);
+        }
+        if (total > 0) {
+            System.out.println("[MIGRATION] Nachlauf: " + total + " Zeile(n) nachgetragen");
+        }
+        return total;
+    }
+
+    /**
+     * Fremdschlüssel ohne Tabellenkopie: InnoDB legt ihn nur mit foreign_key_checks=0
+     * INPLACE an und prüft dann den Bestand nicht, deshalb wird vorher selbst geprüft.
+     */
+    private static long addForeignKey(Connection con, String schema) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT COUNT(*) FROM personal p " +
+                             "LEFT JOIN krankenversicherung kv ON kv.kkid = p.kkid " +
+                             "WHERE p.kkid IS NOT NULL AND kv.kkid IS NULL")) {
+            rs.next();
+            if (rs.getLong(1) > 0) {
+                throw new SQLException(rs.getLong(1) + " Zeile(n) mit unbekannter kkid, FK nicht möglich");
+            }
+        }
+        try (Statement st = con.createStatement()) {
+            st.execute("SET SESSION foreign_key_checks = 0");
+            try {
+                return onlineDdl(con, schema, "ALTER TABLE personal ADD CONSTRAINT fk_personal_kk " +
+                        "FOREIGN KEY (kkid) REFERENCES krankenversicherung(kkid)");
+            } finally {
+                st.execute("SET SESSION foreign_key_checks = 1");
+            }
+        }
+    }
+
+    /**
+     * Führt ein ALTER möglichst ohne Sperre aus: erst INSTANT, dann INPLACE ohne Lock,
+     * zuletzt (mit Warnung) mit Tabellenkopie. Metadaten-Lock-Timeouts werden wiederholt.
+     * Danach wird die Schema-Momentaufnahme verworfen.
+     * @return -1 (DDL)
+     */
+    static long onlineDdl(Connection con, String schema, String alter) throws SQLException {
+        try {
+            for (String algorithm : new String[]{", ALGORITHM=INSTANT", ", ALGORITHM=INPLACE, LOCK=NONE"}) {
+                try {
+                    execWithRetry(con, alter + algorithm);
+                    System.out.println("[MIGRATION] " + alter + algorithm);
+                    return -1;
+                } catch (SQLException e) {
+                    if (!ALGORITHM_UNSUPPORTED.contains(e.getErrorCode())) {
+                        throw e;
+                    }
+                }
+            }
+            System.out.println("[WARN] nicht online möglich, Tabelle wird kopiert: " + alter);
+            execWithRetry(con, alter);
+            return -1;
+        } finally {
+            Hello.schemaChanged(schema);
+        }
+    }
+
+    private static void execWithRetry(Connection con, String sql) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try (Statement st = con.createStatement()) {
+                st.execute(sql);
+                return;
+            } catch (SQLException e) {
+                if (e.getErrorCode() != LOCK_WAIT_TIMEOUT || attempt == 5) {
+                    throw e;
+                }
+                System.out.println("[WARN] Metadaten-Lock belegt, Versuch " + attempt + ": " + sql);
+                pause(1000L * attempt);
+            }
+        }
+    }
+
+    private static int[] pnrRange(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(pnr), MAX(pnr) FROM personal")) {
+            rs.next();
+            int min = rs.getInt(1);
+            return rs.wasNull() ? null : new int[]{min, rs.getInt(2)};
+        }
+    }
+
+    private static long countNull(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM personal WHERE kkid IS NULL")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // --- Checkpoint ----------------------------------------------------------------------
+
+    private static String phase(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT phase FROM migration_checkpoint WHERE migration=?")) {
+            ps.setString(1, NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static Integer lastPnr(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT last_pnr FROM migration_checkpoint WHERE migration=?")) {
+            ps.setString(1, NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int v = rs.getInt(1);
+                return rs.wasNull() ? null : v;
+            }
+        }
+    }
+
+    private static long rowsDone(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT rows_done FROM migration_checkpoint WHERE migration=?")) {
+            ps.setString(1, NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static void saveCheckpoint(Connection con, String phase, Integer lastPnr, long rowsDone)
+            throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO migration_checkpoint(migration, phase, last_pnr, rows_done) VALUES (?,?,?,?) " +
+                        "ON DUPLICATE KEY UPDATE phase=VALUES(phase), last_pnr=VALUES(last_pnr), " +
+                        "rows_done=VALUES(rows_done)")) {
+            ps.setString(1, NAME);
+            ps.setString(2, phase);
+            ps.setObject(3, lastPnr);
+            ps.setLong(4, rowsDone);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Migration unterbrochen", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package fhwedel.JDBC;
+
+/**
+ * Ein Datensatz der Tabelle personal für Massenimporte
+ * (siehe {@link Hello#addDataPersonalBatch}) und Abfragen
+ * (siehe {@link Hello#employeesInAbteilung}).
+ */
+public final class PersonalRecord {
+
+    private final int pnr;
+    private final String name;
+    private final String vorname;
+    private final String gehStufe;
+    private final String abtNr;
+    private final String krankenkasse;
+
+    /**
+     * @param pnr Personalnummer
+     * @param name Nachname
+     * @param vorname Vorname
+     * @param gehStufe Gehaltsstufe
+     * @param abtNr Abteilungsnummer
+     * @param krankenkasse Krankenkassenkürzel
+     */
+    public PersonalRecord(int pnr, String name, String vorname,
+                          String gehStufe, String abtNr, String krankenkasse) {
+        this.pnr          = pnr;
+        this.name         = name;
+        this.vorname      = vorname;
+        this.gehStufe     = gehStufe;
+        this.abtNr        = abtNr;
+        this.krankenkasse = krankenkasse;
+    }
+
+    public int getPnr() {
+        return pnr;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVorname() {
+        return vorname;
+    }
+
+    public String getGehStufe() {
+        return gehStufe;
+    }
+
+    public String getAbtNr() {
+        return abtNr;
+    }
+
+    public String getKrankenkasse() {
+        return krankenkasse;
+    }
+
+    @Override
+    public String toString() {
+        return pnr + " - " + name + ", " + vorname;
+    }
+}
@@ -0,0 +1,136 @@
+package fhwedel.JDBC;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Read-through-Cache für kleine, selten geänderte Stammdaten (Gehaltsstufen,
+ * Abteilungen). Einträge laufen nach {@code ttlMs} ab; bei mehr als
+ * {@code maxSize} Einträgen wird der am längsten nicht gelesene verdrängt.
+ * Auch "nicht gefunden" (null) wird gecacht.
+ * <p>
+ * Schreibende Methoden müssen nach jeder Änderung {@link #invalidate} bzw.
+ * {@link #invalidateAll} aufrufen. Ein Ladevorgang, der vor der Invalidierung
+ * begonnen hat, landet danach nicht mehr im Cache.
+ *
+ * @param <K> Schlüssel
+ * @param <V> Wert
+ */
+public final class ReferenceCache<K, V> {
+
+    private final String name;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LinkedHashMap<K, Slot<V>> map;
+
+    private long generation;
+
+    private final AtomicLong hits      = new AtomicLong();
+    private final AtomicLong misses    = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param name Name für die Statistik
+     * @param ttlMs Lebensdauer eines Eintrags in ms
+     * @param maxSize maximale Anzahl Einträge
+     */
+    public ReferenceCache(String name, long ttlMs, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize muss >= 1 sein");
+        }
+        this.name     = name;
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.maxSize  = maxSize;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Slot<V>> eldest) {
+                boolean full = size() > ReferenceCache.this.maxSize;
+                if (full) {
+                    evictions.incrementAndGet();
+                }
+                return full;
+            }
+        };
+    }
+
+    /**
+     * Liefert den gecachten Wert oder lädt ihn über {@code loader}. Das Laden
+     * läuft außerhalb der Sperre, andere Leser werden also nicht blockiert.
+     * @param key Schlüssel
+     * @param loader Datenbankzugriff für einen Fehltreffer (darf null liefern)
+     * @return Wert oder null
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long gen;
+        synchronized (this) {
+            Slot<V> e = map.get(key);
+            if (e != null && System.nanoTime() - e.loadedAt < ttlNanos) {
+                hits.incrementAndGet();
+                return e.value;
+            }
+            gen = generation;
+        }
+
+        misses.incrementAndGet();
+        V value = loader.apply(key);
+
+        synchronized (this) {
+            if (gen == generation) {
+                map.put(key, new Slot<>(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Entfernt einen Eintrag.
+     * @param key Schlüssel
+     */
+    public synchronized void invalidate(K key) {
+        generation++;
+        map.remove(key);
+    }
+
+    /** Leert den Cache. */
+    public synchronized void invalidateAll() {
+        generation++;
+        map.clear();
+    }
+
+    /** @return Anzahl der Treffer */
+    public long hits() {
+        return hits.get();
+    }
+
+    /** @return Anzahl der Fehltreffer (= Ladevorgänge) */
+    public long misses() {
+        return misses.get();
+    }
+
+    /** @return aktuelle Anzahl Einträge */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * @return Kennzahlen als einzeilige Zusammenfassung
+     */
+    public String stats() {
+        long h = hits.get();
+        long m = misses.get();
+        return String.format("%s: size=%d/%d hits=%d misses=%d evictions=%d hitRate=%.1f%%",
+                name, size(), maxSize, h, m, evictions.get(), h + m == 0 ? 0 : 100.0 * h / (h + m));
+    }
+
+    private static final class Slot<V> {
+        final V value;
+        final long loadedAt;
+
+        Slot(V value, long loadedAt) {
+            this.value    = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package fhwedel.JDBC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Gehaltsrunde über mehrere Gehaltsstufen in einer Transaktion: die betroffenen
+ * Zeilen werden einmal mit {@code FOR UPDATE} gelesen, die neuen Beträge nach den
+ * Regeln (Prozent, Mindest- und Höchstbetrag) berechnet und mit einem einzigen
+ * {@code UPDATE ... SET betrag = CASE geh_stufe WHEN ... END} geschrieben.
+ * Für eine einzelne Stufe genügt {@link Hello#raiseSalaryPercent}.
+ */
+public final class SalaryAdjustment {
+
+    /**
+     * Regel für eine Gehaltsstufe.
+     */
+    public static final class Rule {
+        final String gehStufe;
+        final double percent;
+        final Integer min;
+        final Integer max;
+
+        /**
+         * @param gehStufe Gehaltsstufe (Groß-/Kleinschreibung und Leerzeichen am Rand egal)
+         * @param percent prozentuale Änderung (negativ für Kürzung)
+         * @param min Mindestbetrag nach der Änderung oder null
+         * @param max Höchstbetrag nach der Änderung oder null
+         */
+        public Rule(String gehStufe, double percent, Integer min, Integer max) {
+            if (gehStufe == null || gehStufe.isBlank()) {
+                throw new IllegalArgumentException("geh_stufe darf nicht leer sein");
+            }
+            if (min != null && max != null && min > max) {
+                throw new IllegalArgumentException("min > max für " + gehStufe);
+            }
+            this.gehStufe = gehStufe.strip();
+            this.percent  = percent;
+            this.min      = min;
+            this.max      = max;
+        }
+
+        /**
+         * @param gehStufe Gehaltsstufe
+         * @param percent prozentuale Änderung
+         * @return Regel ohne Grenzen
+         */
+        public static Rule percent(String gehStufe, double percent) {
+            return new Rule(gehStufe, percent, null, null);
+        }
+
+        /**
+         * Neuer Betrag: gerundet wie {@link Math#round(double)}, dann auf [min, max] begrenzt.
+         * @param betrag alter Betrag
+         * @return neuer Betrag
+         */
+        int apply(int betrag) {
+            long n = Math.round(betrag * (1.0 + percent / 100.0));
+            if (min != null) n = Math.max(n, min);
+            if (max != null) n = Math.min(n, max);
+            return Math.toIntExact(n);
+        }
+    }
+
+    private SalaryAdjustment() {
+    }
+
+    /**
+     * Wendet alle Regeln in einer Transaktion an.
+     * @param con offene Verbindung (Auto-Commit wird danach wiederhergestellt)
+     * @param rules höchstens eine Regel je Gehaltsstufe
+     * @return Gehaltsstufe (Schreibweise aus der Datenbank) -> {alter Betrag, neuer Betrag},
+     *         in Reihenfolge der Regeln
+     * @throws IllegalArgumentException bei doppelten Stufen oder Beträgen außerhalb von SMALLINT
+     * @throws IllegalStateException wenn eine Gehaltsstufe nicht existiert
+     * @throws RuntimeException bei SQL-Fehlern
+     */
+    public static Map<String, int[]> apply(Connection con, List<Rule> rules) {
+        return apply(con, rules, null);
+    }
+
+    /**
+     * Wendet alle Regeln in einer Transaktion an und gibt die neuen Beträge nach dem
+     * Commit an {@code afterCommit} weiter (z. B. ein Bulk-Write in die MongoDB-Collection
+     * gehalt). Schlägt das fehl, bleibt MariaDB geändert; der Aufruf von afterCommit
+     * mit demselben Ergebnis kann wiederholt werden.
+     * @param con offene Verbindung (Auto-Commit wird danach wiederhergestellt)
+     * @param rules höchstens eine Regel je Gehaltsstufe
+     * @param afterCommit Empfänger des Ergebnisses oder null
+     * @return Gehaltsstufe (Schreibweise aus der Datenbank) -> {alter Betrag, neuer Betrag},
+     *         in Reihenfolge der Regeln
+     */
+    public static Map<String, int[]> apply(Connection con, List<Rule> rules,
+                                           Consumer<Map<String, int[]>> afterCommit) {
+        // geh_stufe vergleicht in MariaDB ohne Groß-/Kleinschreibung
+        Map<String, Rule> byStufe = new LinkedHashMap<>();
+        Map<String, Rule> seen = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Rule r : rules) {
+            byStufe.put(r.gehStufe, r);
+            if (seen.put(r.gehStufe, r) != null) {
+                throw new IllegalArgumentException("mehrere Regeln für " + r.gehStufe);
+            }
+        }
+        if (byStufe.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        String in = String.join(",", Collections.nCopies(byStufe.size(), "?"));
+        Map<String, int[]> out = new LinkedHashMap<>();
+        try {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                Map<String, Integer> alt = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                Map<String, String> name = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                try (PreparedStatement ps = con.prepareStatement(
+                        "SELECT geh_stufe, betrag FROM gehalt WHERE geh_stufe IN (" + in + ") FOR UPDATE")) {
+                    int i = 1;
+                    for (String s : byStufe.keySet()) ps.setString(i++, s);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            String stufe = rs.getString(1).strip();
+                            alt.put(stufe, rs.getInt(2));
+                            name.put(stufe, stufe);
+                        }
+                    }
+                }
+
+                for (Rule r : byStufe.values()) {
+                    Integer a = alt.get(r.gehStufe);
+                    if (a == null) {
+                        throw new IllegalStateException("Gehaltsstufe nicht gefunden: " + r.gehStufe);
+                    }
+                    int n = r.apply(a);
+                    if (n < Short.MIN_VALUE || n > Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("Betrag " + n + " für " + r.gehStufe + " passt nicht in SMALLINT");
+                    }
+                    out.put(name.get(r.gehStufe), new int[]{a, n});
+                }
+
+                String when = String.join(" ", Collections.nCopies(out.size(), "WHEN ? THEN ?"));
+                try (PreparedStatement ps = con.prepareStatement(
+                        "UPDATE gehalt SET betrag = CASE geh_stufe " + when + " ELSE betrag END " +
+                                "WHERE geh_stufe IN (" + in + ")")) {
+                    int i = 1;
+                    for (var e : out.entrySet()) {
+                        ps.setString(i++, e.getKey());
+                        ps.setInt(i++, e.getValue()[1]);
+                    }
+                    for (String s : out.keySet()) ps.setString(i++, s);
+                    ps.executeUpdate();
+                }
+                con.commit();
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+                for (String stufe : byStufe.keySet()) {
+                    Hello.GEHALT_CACHE.invalidate(Hello.gehaltKey(stufe));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Gehaltsrunde fehlgeschlagen", e);
+        }
+
+        if (afterCommit != null) {
+            afterCommit.accept(out);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,131 @@
+package fhwedel.JDBC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unveränderliche Momentaufnahme der Metadaten eines Schemas: Tabellen, Spalten
+ * (mit Nullbarkeit), Indizes und Fremdschlüssel. Wird mit einer einzigen Abfrage
+ * über information_schema geladen; die Prüfungen danach kosten keinen Roundtrip.
+ * Nach DDL muss die Aufnahme neu geladen werden (siehe {@link Hello#schemaChanged}).
+ * Namen werden ohne Beachtung der Groß-/Kleinschreibung verglichen.
+ */
+public final class SchemaSnapshot {
+
+    private static final String SQL =
+            "SELECT 'C', TABLE_NAME, COLUMN_NAME, IS_NULLABLE FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA=? " +
+            "UNION ALL " +
+            "SELECT DISTINCT 'I', TABLE_NAME, INDEX_NAME, NULL FROM information_schema.STATISTICS " +
+                    "WHERE TABLE_SCHEMA=? " +
+            "UNION ALL " +
+            "SELECT 'F', TABLE_NAME, CONSTRAINT_NAME, REFERENCED_TABLE_NAME " +
+                    "FROM information_schema.REFERENTIAL_CONSTRAINTS WHERE CONSTRAINT_SCHEMA=?";
+
+    private final String schema;
+    private final long loadedAt;
+    private final Set<String> tables = new HashSet<>();
+    private final Map<String, Boolean> columns = new HashMap<>();
+    private final Set<String> indexes = new HashSet<>();
+    private final Map<String, String> foreignKeys = new HashMap<>();
+
+    private SchemaSnapshot(String schema) {
+        this.schema = schema;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Lädt die Metadaten eines Schemas in einem Roundtrip.
+     * @param con offene Verbindung
+     * @param schema Datenbankschema
+     * @return Momentaufnahme
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    public static SchemaSnapshot load(Connection con, String schema) throws SQLException {
+        SchemaSnapshot s = new SchemaSnapshot(schema);
+        try (PreparedStatement ps = con.prepareStatement(SQL)) {
+            ps.setString(1, schema);
+            ps.setString(2, schema);
+            ps.setString(3, schema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String table = key(rs.getString(2));
+                    String name = key(table, rs.getString(3));
+                    switch (rs.getString(1)) {
+                        case "C":
+                            s.tables.add(table);
+                            s.columns.put(name, "YES".equals(rs.getString(4)));
+                            break;
+                        case "I":
+                            s.indexes.add(name);
+                            break;
+                        default:
+                            s.foreignKeys.put(name, rs.getString(4));
+                    }
+                }
+            }
+        }
+        return s;
+    }
+
+    /** @return Name des Schemas */
+    public String schema() {
+        return schema;
+    }
+
+    /** @return Ladezeitpunkt (epoch ms) */
+    public long loadedAt() {
+        return loadedAt;
+    }
+
+    public boolean hasTable(String table) {
+        return tables.contains(key(table));
+    }
+
+    public boolean hasColumn(String table, String column) {
+        return columns.containsKey(key(table, column));
+    }
+
+    /**
+     * @return true, wenn die Spalte existiert und NULL erlaubt
+     */
+    public boolean isNullable(String table, String column) {
+        return Boolean.TRUE.equals(columns.get(key(table, column)));
+    }
+
+    public boolean hasIndex(String table, String index) {
+        return indexes.contains(key(table, index));
+    }
+
+    public boolean hasForeignKey(String table, String fkName) {
+        return foreignKeys.containsKey(key(table, fkName));
+    }
+
+    /**
+     * @return referenzierte Tabelle des Fremdschlüssels oder null
+     */
+    public String referencedTable(String table, String fkName) {
+        return foreignKeys.get(key(table, fkName));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d Tabellen, %d Spalten, %d Indizes, %d FKs",
+                schema, tables.size(), columns.size(), indexes.size(), foreignKeys.size());
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String table, String name) {
+        return key(table) + '.' + key(name);
+    }
+}
@@ -0,0 +1,96 @@
+package fhwedel.JDBC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hilfsfunktionen für streamende Lesezugriffe. Ohne Fetch-Size lädt der
+ * MariaDB-Treiber das komplette Ergebnis in den Heap, bevor das erste
+ * {@code rs.next()} zurückkehrt. Mit forward-only/read-only Cursor und
+ * positiver Fetch-Size werden die Zeilen dagegen blockweise nachgeladen:
+ * der Speicherbedarf bleibt konstant und die erste Zeile kommt sofort.
+ *
+ * Achtung: Solange ein streamendes ResultSet offen ist, zwingt jede weitere
+ * Abfrage auf derselben Connection den Treiber, den Rest des Ergebnisses doch
+ * in den Speicher zu laden. Parallel offene Cursor brauchen eigene Connections.
+ */
+public final class StreamingQuery {
+
+    /** Standard-Fetch-Size, überschreibbar über die Umgebungsvariable JDBC_FETCH_SIZE. */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    private static final int FETCH_SIZE = fetchSizeFromEnv();
+
+    private StreamingQuery() {
+    }
+
+    /**
+     * @return konfigurierte Fetch-Size
+     */
+    public static int fetchSize() {
+        return FETCH_SIZE;
+    }
+
+    /**
+     * Erzeugt ein Statement für streamende Abfragen mit der konfigurierten Fetch-Size.
+     * @param con offene Verbindung
+     * @return forward-only, read-only Statement
+     * @throws SQLException bei SQL-Fehlern
+     */
+    public static Statement createStatement(Connection con) throws SQLException {
+        return createStatement(con, FETCH_SIZE);
+    }
+
+    /**
+     * Erzeugt ein Statement für streamende Abfragen.
+     * @param con offene Verbindung
+     * @param fetchSize Zeilen pro Nachladen (> 0)
+     * @return forward-only, read-only Statement
+     * @throws SQLException bei SQL-Fehlern
+     */
+    public static Statement createStatement(Connection con, int fetchSize) throws SQLException {
+        Statement st = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        st.setFetchSize(fetchSize);
+        return st;
+    }
+
+    /**
+     * Bereitet eine streamende Abfrage mit der konfigurierten Fetch-Size vor.
+     * @param con offene Verbindung
+     * @param sql SELECT mit Platzhaltern
+     * @return forward-only, read-only PreparedStatement
+     * @throws SQLException bei SQL-Fehlern
+     */
+    public static PreparedStatement prepare(Connection con, String sql) throws SQLException {
+        return prepare(con, sql, FETCH_SIZE);
+    }
+
+    /**
+     * Bereitet eine streamende Abfrage vor.
+     * @param con offene Verbindung
+     * @param sql SELECT mit Platzhaltern
+     * @param fetchSize Zeilen pro Nachladen (> 0)
+     * @return forward-only, read-only PreparedStatement
+     * @throws SQLException bei SQL-Fehlern
+     */
+    public static PreparedStatement prepare(Connection con, String sql, int fetchSize) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        return ps;
+    }
+
+    private static int fetchSizeFromEnv() {
+        String v = System.getenv("JDBC_FETCH_SIZE");
+        if (v == null || v.isEmpty()) {
+            return DEFAULT_FETCH_SIZE;
+        }
+        int n = Integer.parseInt(v);
+        if (n <= 0) {
+            throw new IllegalArgumentException("JDBC_FETCH_SIZE muss > 0 sein");
+        }
+        return n;
+    }
+}
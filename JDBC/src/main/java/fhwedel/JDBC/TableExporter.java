@@ -0,0 +1,353 @@
+package fhwedel.JDBC;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Export ganzer Tabellen als CSV oder NDJSON (ein JSON-Objekt pro Zeile).
+ * <ul>
+ *   <li>Lesen streamend über {@link StreamingQuery}</li>
+ *   <li>Spaltenmetadaten werden einmal je Export aufgelöst; Kopfzeile bzw.
+ *       JSON-Schlüssel liegen danach fertig vor</li>
+ *   <li>eine Zeile wird in einem wiederverwendeten Puffer aufgebaut, nach UTF-8
+ *       kodiert und gesammelt in einen {@link FileChannel} geschrieben</li>
+ *   <li>optional Aufteilung nach Primärschlüssel-Bereichen: jeder Bereich wird
+ *       von einem eigenen Worker mit eigener Verbindung in eine eigene Datei geschrieben</li>
+ * </ul>
+ */
+public final class TableExporter {
+
+    /** Ausgabeformat. */
+    public enum Format {
+        CSV("csv"), NDJSON("ndjson");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /** @return Dateiendung ohne Punkt */
+        public String extension() {
+            return extension;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TableExporter() {
+    }
+
+    /**
+     * Exportiert eine Tabelle vollständig in eine Datei.
+     * @param con offene Verbindung
+     * @param table Tabellenname (nur vertrauenswürdig verwenden)
+     * @param format Ausgabeformat
+     * @param file Zieldatei (wird überschrieben)
+     * @return Anzahl geschriebener Zeilen
+     * @throws SQLException bei SQL-Fehlern
+     * @throws IOException bei Schreibfehlern
+     */
+    public static long export(Connection con, String table, Format format, Path file)
+            throws SQLException, IOException {
+        try (Statement st = StreamingQuery.createStatement(con);
+             ResultSet rs = st.executeQuery("SELECT * FROM " + table)) {
+            return write(rs, format, file);
+        }
+    }
+
+    /**
+     * Exportiert eine Tabelle in {@code parts} Dateien, aufgeteilt nach gleich großen
+     * Bereichen eines ganzzahligen Primärschlüssels. Jeder Bereich läuft in einem
+     * eigenen Thread mit eigener Verbindung aus dem Pool.
+     * Dateinamen: {@code <table>.partNN.<ext>} bzw. {@code <table>.<ext>} bei einem Teil.
+     *
+     * @param pool Connection-Pool (mindestens {@code parts} Verbindungen sinnvoll)
+     * @param table Tabellenname (nur vertrauenswürdig verwenden)
+     * @param pkColumn ganzzahlige Schlüsselspalte
+     * @param format Ausgabeformat
+     * @param dir Zielverzeichnis
+     * @param parts Anzahl der Teile (>= 1)
+     * @return geschriebene Dateien in Schlüsselreihenfolge
+     * @throws SQLException bei SQL-Fehlern
+     * @throws IOException bei Schreibfehlern
+     */
+    public static List<Path> exportParallel(ConnectionPool pool, String table, String pkColumn,
+                                            Format format, Path dir, int parts)
+            throws SQLException, IOException {
+        if (parts < 1) {
+            throw new IllegalArgumentException("parts muss >= 1 sein");
+        }
+        Files.createDirectories(dir);
+
+        long min;
+        long max;
+        try (Connection con = pool.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(" + pkColumn + "), MAX(" + pkColumn + ") FROM " + table)) {
+            rs.next();
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+            if (rs.wasNull()) {
+                // leere Tabelle: nur Kopfzeile bzw. leere Datei
+                Path file = dir.resolve(table + "." + format.extension());
+                export(con, table, format, file);
+                return List.of(file);
+            }
+        }
+
+        long span = (max - min) / parts + 1;
+        String sql = "SELECT * FROM " + table + " WHERE " + pkColumn + " >= ? AND " + pkColumn + " < ?"
+                + " ORDER BY " + pkColumn;
+
+        ExecutorService workers = Executors.newFixedThreadPool(parts);
+        try {
+            List<Path> files = new ArrayList<>();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int p = 0; p < parts; p++) {
+                long lo = min + p * span;
+                long hi = Math.min(lo + span, max + 1);
+                Path file = dir.resolve(parts == 1
+                        ? table + "." + format.extension()
+                        : String.format("%s.part%02d.%s", table, p + 1, format.extension()));
+                files.add(file);
+
+                results.add(workers.submit(() -> {
+                    try (Connection con = pool.getConnection();
+                         PreparedStatement ps = StreamingQuery.prepare(con, sql)) {
+                        ps.setLong(1, lo);
+                        ps.setLong(2, hi);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            return write(rs, format, file);
+                        }
+                    }
+                }));
+            }
+
+            long total = 0;
+            for (Future<Long> f : results) {
+                total += f.get();
+            }
+            System.out.println("[EXPORT] " + table + ": " + total + " Zeilen in " + parts + " Datei(en)");
+            return files;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export " + table + " unterbrochen", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof SQLException) throw (SQLException) c;
+            if (c instanceof IOException) throw (IOException) c;
+            if (c instanceof RuntimeException) throw (RuntimeException) c;
+            throw new IOException("Export " + table + " fehlgeschlagen", c);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static long write(ResultSet rs, Format format, Path file) throws SQLException, IOException {
+        ResultSetMetaData m = rs.getMetaData();
+        int c = m.getColumnCount();
+
+        // Metadaten einmalig auflösen
+        String[] keys = new String[c];
+        boolean[] numeric = new boolean[c];
+        StringBuilder line = new StringBuilder(256);
+        for (int i = 0; i < c; i++) {
+            String label = m.getColumnLabel(i + 1);
+            numeric[i] = isNumeric(m.getColumnType(i + 1));
+            if (format == Format.CSV) {
+                if (i > 0) line.append(',');
+                appendCsv(line, label);
+            } else {
+                line.setLength(0);
+                line.append(i == 0 ? "{" : ",");
+                appendJson(line, label);
+                line.append(':');
+                keys[i] = line.toString();
+            }
+        }
+
+        long rows = 0;
+        try (Output out = new Output(file)) {
+            if (format == Format.CSV) {
+                line.append('\n');
+                out.write(line);
+            }
+
+            while (rs.next()) {
+                line.setLength(0);
+                for (int i = 0; i < c; i++) {
+                    String v = rs.getString(i + 1);
+                    if (format == Format.CSV) {
+                        if (i > 0) line.append(',');
+                        if (v != null) appendCsv(line, v);
+                    } else {
+                        line.append(keys[i]);
+                        if (v == null) line.append("null");
+                        else if (numeric[i]) line.append(v);
+                        else appendJson(line, v);
+                    }
+                }
+                line.append(format == Format.CSV ? "\n" : c == 0 ? "{}\n" : "}\n");
+                out.write(line);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static boolean isNumeric(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** CSV nach RFC 4180: Anführungszeichen nur bei Bedarf, {@code "} wird verdoppelt. */
+    private static void appendCsv(StringBuilder sb, String v) {
+        boolean quote = false;
+        for (int i = 0; i < v.length() && !quote; i++) {
+            char ch = v.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            sb.append(v);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            if (ch == '"') sb.append('"');
+            sb.append(ch);
+        }
+        sb.append('"');
+    }
+
+    private static void appendJson(StringBuilder sb, String v) {
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            switch (ch) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /** Gepufferte UTF-8-Ausgabe auf einen FileChannel. */
+    private static final class Output implements AutoCloseable {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharsetEncoder enc = StandardCharsets.UTF_8.newEncoder();
+
+        Output(Path file) throws IOException {
+            ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(CharSequence s) throws IOException {
+            CharBuffer in = CharBuffer.wrap(s);
+            while (true) {
+                CoderResult r = enc.encode(in, buf, true);
+                if (r.isOverflow()) {
+                    drain();
+                } else if (r.isUnderflow()) {
+                    enc.reset();
+                    return;
+                } else {
+                    r.throwException();
+                }
+            }
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (ch) {
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Nächtlicher Export. Konfiguration über Umgebungsvariablen:
+     * MARIADB_URL/USER/PASS, EXPORT_DIR (Standard {@code export}),
+     * EXPORT_FORMAT ({@code csv}|{@code ndjson}), EXPORT_PARTS (Standard 4) und
+     * EXPORT_TABLES als Liste {@code tabelle:schlüssel,...}.
+     */
+    public static void main(String[] args) {
+        String url  = getenvOr("MARIADB_URL", "jdbc:mariadb://localhost:3306/firma");
+        String user = getenvOr("MARIADB_USER", "root");
+        String pass = getenvOr("MARIADB_PASS", "password");
+        Path dir    = Paths.get(getenvOr("EXPORT_DIR", "export"));
+        Format format = Format.valueOf(getenvOr("EXPORT_FORMAT", "csv").toUpperCase());
+        int parts   = Integer.parseInt(getenvOr("EXPORT_PARTS", "4"));
+        String tables = getenvOr("EXPORT_TABLES", "personal:pnr,gehaltszahlung:gz_id");
+
+        try (ConnectionPool pool = new ConnectionPool(url, user, pass, parts + 1, 30_000, 250)) {
+            for (String spec : tables.split(",")) {
+                String[] t = spec.trim().split(":");
+                long t0 = System.nanoTime();
+                List<Path> files = exportParallel(pool, t[0], t[1], format, dir, parts);
+                System.out.printf("[OK] %s -> %s (%.0f ms)%n", t[0], files, (System.nanoTime() - t0) / 1e6);
+            }
+            System.out.println("Pool: " + pool.metrics());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String getenvOr(String key, String def) {
+        String v = System.getenv(key);
+        return (v == null || v.isEmpty()) ? def : v;
+    }
+}
@@ -0,0 +1,71 @@
+package fhwedel.JDBC;
+
+/**
+ * Ergebnis eines einzelnen Datensatzes aus {@link Hello#addDataPersonalBatch}.
+ */
+public final class UpsertResult {
+
+    /** Ausgang eines Datensatzes. */
+    public enum Status {
+        /** neu eingefügt */
+        INSERTED,
+        /** vorhandene pnr aktualisiert */
+        UPDATED,
+        /** vorhandene pnr, keine Änderung */
+        UNCHANGED,
+        /**
+         * geschrieben, ob neu oder geändert ist unbekannt: im Bulk-Modus ({@code useBulkStmts},
+         * bei Verbindungen aus dem {@link ConnectionPool} immer) meldet der Treiber für jede
+         * Zeile eines erfolgreichen Batches nur {@code SUCCESS_NO_INFO}
+         */
+        OK,
+        /** Längenregeln verletzt, nicht an die Datenbank geschickt */
+        INVALID,
+        /** von der Datenbank abgelehnt */
+        FAILED
+    }
+
+    private final int index;
+    private final int pnr;
+    private final Status status;
+    private final String message;
+
+    /**
+     * @param index Position des Datensatzes in der Eingabe (ab 0)
+     * @param pnr Personalnummer
+     * @param status Ausgang
+     * @param message Fehlermeldung bei INVALID/FAILED, sonst null
+     */
+    public UpsertResult(int index, int pnr, Status status, String message) {
+        this.index   = index;
+        this.pnr     = pnr;
+        this.status  = status;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getPnr() {
+        return pnr;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /** @return true, wenn der Datensatz in der Datenbank steht */
+    public boolean isSuccess() {
+        return status != Status.INVALID && status != Status.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + index + " pnr=" + pnr + ": " + status + (message == null ? "" : " (" + message + ")");
+    }
+}
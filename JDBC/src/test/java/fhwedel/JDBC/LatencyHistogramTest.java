@@ -0,0 +1,52 @@
+package fhwedel.JDBC;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPerzentileAusBuckets() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 900; i++) h.record(1_000_000);   // 1 ms
+        for (int i = 0; i < 90; i++)  h.record(5_000_000);   // 5 ms
+        for (int i = 0; i < 10; i++)  h.record(100_000_000); // 100 ms
+
+        assertEquals(1000, h.count());
+        // 1000 µs liegt in [896, 1024), 5000 µs in [4096, 5120)
+        assertEquals(1.024, h.percentileMillis(50), 1e-9);
+        assertEquals(1.024, h.percentileMillis(90), 1e-9);
+        assertEquals(5.12, h.percentileMillis(95), 1e-9);
+        // Obergrenze des obersten Buckets wird auf das Maximum begrenzt
+        assertEquals(100.0, h.percentileMillis(99.9), 1e-9);
+        assertEquals(100.0, h.maxMillis(), 1e-9);
+        assertEquals((900 * 1 + 90 * 5 + 10 * 100) / 1000.0, h.meanMillis(), 1e-9);
+    }
+
+    @Test
+    public void testRelativerFehlerHoechstens25Prozent() {
+        for (long nanos = 4_000; nanos < 500_000_000L; nanos = nanos * 11 / 10 + 7) {
+            LatencyHistogram h = new LatencyHistogram();
+            h.record(nanos);
+            h.record(1_000_000_000L); // damit das Maximum nicht begrenzt
+
+            double ms = h.percentileMillis(1);
+            assertTrue(nanos + " ns -> " + ms + " ms", ms * 1e6 > nanos);
+            assertTrue(nanos + " ns -> " + ms + " ms", ms * 1e6 <= nanos * 1.25 + 1e-6);
+        }
+    }
+
+    @Test
+    public void testLeerUndNegativ() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0.0, h.percentileMillis(99), 0);
+        assertEquals(0.0, h.meanMillis(), 0);
+
+        h.record(-5);
+        h.record(10_000_000);
+        assertEquals(2, h.count());
+        // negativ zählt als 0 und landet im ersten Bucket (bis 2 µs)
+        assertEquals(0.002, h.percentileMillis(50), 1e-9);
+    }
+}
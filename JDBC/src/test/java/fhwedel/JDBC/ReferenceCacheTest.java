@@ -0,0 +1,54 @@
+package fhwedel.JDBC;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ReferenceCacheTest {
+
+    @Test
+    public void testLadenVorInvalidierungWirdNichtGecacht() {
+        ReferenceCache<String, Integer> cache = new ReferenceCache<>("gehalt", 60_000, 8);
+
+        // ein Schreiber invalidiert, während der Leser noch den alten Wert lädt
+        Integer alt = cache.get("it1", k -> {
+            cache.invalidate(k);
+            return 2000;
+        });
+        assertEquals(Integer.valueOf(2000), alt);
+        assertEquals(0, cache.size());
+
+        assertEquals(Integer.valueOf(2200), cache.get("it1", k -> 2200));
+        assertEquals(Integer.valueOf(2200), cache.get("it1", k -> { throw new AssertionError("Treffer erwartet"); }));
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testInvalidateAllVerwirftLaufendeLadevorgaenge() {
+        ReferenceCache<String, Integer> cache = new ReferenceCache<>("gehalt", 60_000, 8);
+        cache.get("it1", k -> 2000);
+
+        cache.get("it2", k -> {
+            cache.invalidateAll();
+            return 2500;
+        });
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNullWirdGecachtUndAeltesterVerdraengt() {
+        ReferenceCache<String, String> cache = new ReferenceCache<>("abteilung", 60_000, 2);
+
+        assertNull(cache.get("lager", k -> null));
+        assertNull(cache.get("lager", k -> { throw new AssertionError("Treffer erwartet"); }));
+
+        cache.get("verkauf", k -> "d15");
+        cache.get("lager", k -> null); // zuletzt gelesen
+        cache.get("einkauf", k -> "d12");
+
+        assertEquals(2, cache.size());
+        assertEquals("d15", cache.get("verkauf", k -> "d15")); // verdrängt, wird neu geladen
+        assertEquals(4, cache.misses());
+    }
+}
@@ -0,0 +1,43 @@
+package fhwedel.JDBC;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SalaryAdjustmentTest {
+
+    @Test
+    public void testRundungWieMathRound() {
+        assertEquals(2060, SalaryAdjustment.Rule.percent("it1", 3.0).apply(2000));
+        assertEquals(1026, SalaryAdjustment.Rule.percent("it1", 2.5).apply(1001));   // 1026.025
+        assertEquals(1027, SalaryAdjustment.Rule.percent("it1", 2.55).apply(1001));  // 1026.5255
+        assertEquals(1800, SalaryAdjustment.Rule.percent("it1", -10.0).apply(2000));
+        assertEquals(2000, SalaryAdjustment.Rule.percent("it1", 0.0).apply(2000));
+    }
+
+    @Test
+    public void testMindestUndHoechstbetrag() {
+        SalaryAdjustment.Rule r = new SalaryAdjustment.Rule("it2", 10.0, 2500, 3000);
+        assertEquals(2500, r.apply(2000));  // 2200 -> min
+        assertEquals(2750, r.apply(2500));
+        assertEquals(3000, r.apply(2800));  // 3080 -> max
+
+        SalaryAdjustment.Rule kuerzung = new SalaryAdjustment.Rule("it2", -50.0, 1500, null);
+        assertEquals(1500, kuerzung.apply(2000));
+    }
+
+    @Test
+    public void testUngueltigeRegeln() {
+        try {
+            new SalaryAdjustment.Rule("it1", 1.0, 3000, 2000);
+            fail("min > max erwartet");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            SalaryAdjustment.Rule.percent("  ", 1.0);
+            fail("leere Gehaltsstufe erwartet");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals("IT2", SalaryAdjustment.Rule.percent(" IT2 ", 1.0).gehStufe);
+    }
+}
@@ -0,0 +1,32 @@
+package fhwedel.Mongo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-Ereignis für einen bulkWrite von {@link BatchWriter}.
+ */
+@Name("fhwedel.BatchWrite")
+@Label("Batch schreiben")
+@Category({"DBTI25", "Import"})
+@StackTrace(false)
+public final class BatchWriteEvent extends jdk.jfr.Event {
+
+    @Label("Collection")
+    public String collection;
+
+    @Label("Operationen")
+    public long rows;
+
+    @Label("Bytes")
+    @Description("Nutzdaten der geschriebenen Dokumente, geschätzt ohne erneutes Kodieren")
+    @DataAmount
+    public long bytes;
+
+    @Label("Fehlgeschlagen")
+    public boolean failed;
+}
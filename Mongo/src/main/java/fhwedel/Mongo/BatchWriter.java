@@ -0,0 +1,204 @@
+package fhwedel.Mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sammelt Schreiboperationen für eine Collection und schickt sie gebündelt per
+ * bulkWrite an MongoDB, statt jedes Dokument einzeln mit insertOne zu schreiben.
+ * Pro Batch werden Latenz und Durchsatz ausgegeben, beim Schließen eine Summe;
+ * zusätzlich je Batch ein {@link BatchWriteEvent} für Java Flight Recorder.
+ * Nicht thread-safe: jeder schreibende Thread braucht einen eigenen BatchWriter.
+ */
+final class BatchWriter implements AutoCloseable {
+
+    private final MongoCollection<Document> collection;
+    private final int batchSize;
+    private final BulkWriteOptions options;
+    private final List<WriteModel<Document>> buffer;
+    private final boolean countBytes;
+
+    private int batches;
+    private long written;
+    private long bytes;
+    private long nanos;
+
+    /**
+     * Erstellt einen BatchWriter.
+     * @param collection Ziel-Collection
+     * @param batchSize Anzahl Operationen pro bulkWrite (mindestens 1)
+     * @param ordered false erlaubt dem Server, die Operationen eines Batches
+     *                ungeordnet (und bei Fehlern weiter) auszuführen
+     */
+    BatchWriter(MongoCollection<Document> collection, int batchSize, boolean ordered) {
+        this(collection, batchSize, ordered, false);
+    }
+
+    /**
+     * Erstellt einen BatchWriter, der auf Wunsch die Nutzdaten aller Batches summiert.
+     * @param collection Ziel-Collection
+     * @param batchSize Anzahl Operationen pro bulkWrite (mindestens 1)
+     * @param ordered geordnete oder ungeordnete bulkWrites
+     * @param countBytes true summiert {@link #payloadBytes(Object)} für {@link #bytes()}
+     */
+    BatchWriter(MongoCollection<Document> collection, int batchSize, boolean ordered, boolean countBytes) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize muss >= 1 sein");
+        }
+        this.collection = collection;
+        this.batchSize  = batchSize;
+        this.options    = new BulkWriteOptions().ordered(ordered);
+        this.buffer     = new ArrayList<>(batchSize);
+        this.countBytes = countBytes;
+    }
+
+    /**
+     * Puffert ein Dokument zum Einfügen.
+     * @param doc einzufügendes Dokument
+     * @return true, wenn dabei ein Batch geschrieben wurde
+     */
+    boolean insert(Document doc) {
+        return add(new InsertOneModel<>(doc));
+    }
+
+    /**
+     * Puffert eine beliebige Schreiboperation und schreibt den Batch, sobald er voll ist.
+     * @param model Schreiboperation
+     * @return true, wenn dabei ein Batch geschrieben wurde
+     */
+    boolean add(WriteModel<Document> model) {
+        buffer.add(model);
+        if (buffer.size() >= batchSize) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Schreibt alle gepufferten Operationen als einen bulkWrite.
+     */
+    void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        int n = buffer.size();
+        BatchWriteEvent event = new BatchWriteEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        boolean ok = false;
+        try {
+            collection.bulkWrite(buffer, options);
+            ok = true;
+        } finally {
+            event.end();
+            boolean record = event.shouldCommit();
+            // Bytes nur zählen, wenn aufgezeichnet oder summiert wird
+            long b = record || countBytes ? bytesOf(buffer) : 0;
+            bytes += b;
+            if (record) {
+                event.collection = name();
+                event.rows = n;
+                event.bytes = b;
+                event.failed = !ok;
+                event.commit();
+            }
+            // ein fehlgeschlagener Batch wird nicht erneut gesendet
+            buffer.clear();
+        }
+        long dt = System.nanoTime() - t0;
+
+        batches++;
+        written += n;
+        nanos   += dt;
+        System.out.printf("[BATCH] %s #%d: %d Dok. in %.1f ms (%.0f Dok./s)%n",
+                name(), batches, n, dt / 1e6, rate(n, dt));
+    }
+
+    /** @return Anzahl bisher geschriebener Operationen */
+    long written() {
+        return written;
+    }
+
+    /** @return Nutzdaten aller bisherigen Batches, 0 ohne {@code countBytes} */
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Schreibt den Rest und gibt eine Zusammenfassung aus.
+     */
+    @Override
+    public void close() {
+        flush();
+        if (batches > 0) {
+            System.out.printf("[BATCH] %s gesamt: %d Dok. in %d Batches, %.1f ms (%.0f Dok./s)%n",
+                    name(), written, batches, nanos / 1e6, rate(written, nanos));
+        }
+    }
+
+    private String name() {
+        return collection.getNamespace().getCollectionName();
+    }
+
+    /** Nutzdaten der eingefügten bzw. ersetzenden Dokumente. */
+    private static long bytesOf(List<WriteModel<Document>> models) {
+        long bytes = 0;
+        for (WriteModel<Document> m : models) {
+            if (m instanceof InsertOneModel) {
+                bytes += payloadBytes(((InsertOneModel<Document>) m).getDocument());
+            } else if (m instanceof ReplaceOneModel) {
+                bytes += payloadBytes(((ReplaceOneModel<Document>) m).getReplacement());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Schätzt die Nutzdaten eines Werts, ohne ihn zu kodieren: Zeichen von Schlüsseln und
+     * Texten, 1 Byte je Boolean, 4 je Integer, 8 je sonstiger Zahl oder Datum. Feldtypen und
+     * Längenpräfixe von BSON fehlen, die echte Dokumentgröße liegt also etwas darüber.
+     * @param value Dokument, Liste oder Einzelwert
+     * @return geschätzte Bytes
+     */
+    static long payloadBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof Map) {
+            long n = 0;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                n += payloadBytes(e.getKey()) + payloadBytes(e.getValue());
+            }
+            return n;
+        }
+        if (value instanceof Collection) {
+            long n = 0;
+            for (Object o : (Collection<?>) value) {
+                n += payloadBytes(o);
+            }
+            return n;
+        }
+        if (value instanceof Boolean) {
+            return 1;
+        }
+        return value instanceof Integer ? 4 : 8;
+    }
+
+    private static double rate(long n, long nanos) {
+        return nanos == 0 ? 0 : n * 1e9 / nanos;
+    }
+}
@@ -1,6 +1,8 @@
 package fhwedel.Mongo;
 
 import com.mongodb.client.*;
+import fhwedel.JDBC.ConnectionPool;
+import fhwedel.JDBC.StreamingQuery;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import org.bson.Document;
@@ -8,51 +10,68 @@ import org.bson.Document;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 public class CRUDclient {
 
+    /**
+     * Liefert neue MariaDB-Verbindungen; jeder nebenläufige Import braucht eine eigene.
+     */
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
     public static void main(String[] args) {
         String mariaUrl  = getenvOr("MARIADB_URL", "jdbc:mariadb://localhost:3306/firma");
         String mariaUser = getenvOr("MARIADB_USER", "root");
         String mariaPass = getenvOr("MARIADB_PASS", "password");
         String mongoUri  = getenvOr("MONGO_URI", "mongodb://localhost:27017");
         String mongoDb   = getenvOr("MONGO_DB", "firma");
+        // merge: Kindtabellen je einmal sortiert lesen; lookup: je Mitarbeiter einzeln abfragen
+        boolean mergeJoin = !"lookup".equalsIgnoreCase(getenvOr("IMPORT_JOIN", "merge"));
+        // full: leeren und neu füllen; sync: nur Änderungen; shadow: über Schatten-Collections
+        String mode = getenvOr("IMPORT_MODE", "full").toLowerCase();
+
+        // personal allein braucht bis zu vier gleichzeitige Verbindungen (Merge-Join)
+        int poolSize = Integer.parseInt(getenvOr("JDBC_POOL_SIZE", "8"));
+        int personalConnections = personalConnections(mergeJoin);
+        if (poolSize < personalConnections) {
+            // der personal-Import hielte seine Verbindungen und liefe in den Pool-Timeout
+            System.err.println("[ERROR] JDBC_POOL_SIZE=" + poolSize + " zu klein: der personal-Import braucht "
+                    + personalConnections + " gleichzeitige Verbindungen");
+            System.exit(1);
+        }
+        if (poolSize < personalConnections + 2) {
+            System.out.println("[WARN] JDBC_POOL_SIZE=" + poolSize + ": unter " + (personalConnections + 2)
+                    + " warten abteilungen/gehalt auf freie Verbindungen");
+        }
+        // Zusammenfassung der Mongo-Kommandos alle n Sekunden (0 = nur am Ende)
+        long metricsInterval = Long.parseLong(getenvOr("MONGO_METRICS_INTERVAL", "30"));
+        // Bytes je Kommando zählen kodiert jeden Batch ein zweites Mal, daher nur auf Wunsch
+        MongoMetrics metrics = new MongoMetrics(Boolean.parseBoolean(getenvOr("MONGO_METRICS_BYTES", "false")));
+
+        ImportPipeline.Options opts = pipelineOptions();
 
         System.out.println("[INFO] Starte Import: MariaDB -> MongoDB");
         System.out.println("[INFO] MariaDB: " + mariaUrl + " (user=" + mariaUser + ")");
         System.out.println("[INFO] MongoDB: " + mongoUri + " / DB=" + mongoDb);
+        System.out.println("[INFO] Modus: " + mode);
+        System.out.println("[INFO] Kindtabellen: " + (mergeJoin ? "merge" : "lookup"));
+        System.out.println("[INFO] Pipeline: " + opts);
 
-        try (Connection maria = DriverManager.getConnection(mariaUrl, mariaUser, mariaPass);
-             MongoClient mClient = MongoClients.create(mongoUri)) {
-
-            MongoDatabase db = mClient.getDatabase(mongoDb);
-
-            // Ziel-Collections
-            MongoCollection<Document> abteilungen  = db.getCollection("abteilungen");
-            MongoCollection<Document> gehalt       = db.getCollection("gehalt");
-            MongoCollection<Document> personal     = db.getCollection("personal");
-
-            // Für wiederholte Läufe Collections leeren
-            abteilungen.deleteMany(new Document());
-            gehalt.deleteMany(new Document());
-            personal.deleteMany(new Document());
+        AutoCloseable metricsLog = metricsInterval > 0 ? metrics.startLogging(metricsInterval) : () -> { };
+        try (ConnectionPool pool = new ConnectionPool(mariaUrl, mariaUser, mariaPass, poolSize, 30_000, 250);
+             MongoClient mClient = MongoClients.create(metrics.settings(mongoUri))) {
 
-            // Import in logischer Reihenfolge
-            importAbteilungen(maria, abteilungen);
-            importGehalt(maria, gehalt);
-            importPersonalMitEinbettungen(maria, personal);
+            runImport(pool::getConnection, mClient.getDatabase(mongoDb), mode, mergeJoin, opts);
 
-            // Indexe erstellen
-            personal.createIndex(Indexes.ascending("pnr"), new IndexOptions().unique(true));
-            abteilungen.createIndex(Indexes.ascending("abt_nr"), new IndexOptions().unique(true));
-            gehalt.createIndex(Indexes.ascending("geh_stufe"), new IndexOptions().unique(true));
-
-            // Abschluss-Info
-            System.out.println("[OK] Import abgeschlossen.");
-            System.out.printf("     personal:    %d%n", personal.countDocuments());
-            System.out.printf("     abteilungen: %d%n", abteilungen.countDocuments());
-            System.out.printf("     gehalt:      %d%n", gehalt.countDocuments());
+            System.out.println("[INFO] JDBC-Pool: " + pool.metrics());
+            System.out.print(metrics.summary());
 
         } catch (SQLException e) {
             System.err.println("[ERROR] SQL: " + e.getMessage());
@@ -62,101 +81,448 @@ public class CRUDclient {
             System.err.println("[ERROR] General: " + e.getMessage());
             e.printStackTrace();
             System.exit(3);
+        } finally {
+            try {
+                metricsLog.close();
+            } catch (Exception ignored) {
+            }
         }
     }
 
     /**
-     * Liest alle Abteilungen aus MariaDB und speichert sie als einzelne
-     * Dokumente in der Collection abteilungen.
+     * Importiert abteilungen, gehalt und personal in die angegebene Datenbank, mit den
+     * Pipeline-Einstellungen aus der Umgebung (PIPELINE_*, MONGO_BATCH_SIZE, MONGO_ORDERED).
+     * Fehler kommen als Exception zurück statt über {@code System.exit}; so lässt sich der
+     * Import auch aus Benchmarks heraus wiederholt aufrufen.
      *
-     * @param maria Offene MariaDB-Verbindung
-     * @param abteilungen Ziel-Collection in MongoDB
+     * @param maria Quelle für MariaDB-Verbindungen (bis zu sechs gleichzeitig)
+     * @param db Zieldatenbank
+     * @param mode full (leeren und neu füllen), sync (nur Änderungen) oder shadow (Schatten-Collections)
+     * @param mergeJoin true für den Merge-Join der Kindtabellen, false für Einzelabfragen
      * @throws SQLException Falls ein SQL-Fehler auftritt
+     * @throws InterruptedException Falls der Thread beim Warten auf die Importe unterbrochen wird
      */
-    private static void importAbteilungen(Connection maria, MongoCollection<Document> abteilungen) throws SQLException {
-        String sql = "SELECT abt_nr, name FROM abteilung";
+    public static void runImport(ConnectionFactory maria, MongoDatabase db, String mode, boolean mergeJoin)
+            throws SQLException, InterruptedException {
+        runImport(maria, db, mode, mergeJoin, pipelineOptions());
+    }
 
-        try (Statement st = maria.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            int n = 0;
+    /**
+     * Wie {@link #runImport(ConnectionFactory, MongoDatabase, String, boolean)}, mit vorgegebener Pipeline.
+     */
+    static void runImport(ConnectionFactory maria, MongoDatabase db, String mode, boolean mergeJoin,
+                          ImportPipeline.Options opts) throws SQLException, InterruptedException {
+        // Ziel-Collections
+        MongoCollection<Document> abteilungen  = db.getCollection("abteilungen");
+        MongoCollection<Document> gehalt       = db.getCollection("gehalt");
+        MongoCollection<Document> personal     = db.getCollection("personal");
+
+        ImportTarget zielAbteilungen;
+        ImportTarget zielGehalt;
+        ImportTarget zielPersonal;
+
+        switch (mode) {
+            case "sync":
+                // Upserts über den Schlüssel brauchen die Indexe schon vorher
+                createIndexes(personal, abteilungen, gehalt);
+                zielAbteilungen = new DeltaSync(abteilungen, "abt_nr");
+                zielGehalt      = new DeltaSync(gehalt, "geh_stufe");
+                zielPersonal    = new DeltaSync(personal, "pnr");
+                break;
+            case "shadow":
+                // Live-Collections bleiben bis zum Tausch unverändert
+                zielAbteilungen = new ShadowLoad(db, "abteilungen", "abt_nr");
+                zielGehalt      = new ShadowLoad(db, "gehalt", "geh_stufe");
+                zielPersonal    = new ShadowLoad(db, "personal", "pnr");
+                break;
+            case "full":
+                // Für wiederholte Läufe Collections leeren
+                abteilungen.deleteMany(new Document());
+                gehalt.deleteMany(new Document());
+                personal.deleteMany(new Document());
+                zielAbteilungen = ImportTarget.insertInto(abteilungen);
+                zielGehalt      = ImportTarget.insertInto(gehalt);
+                zielPersonal    = ImportTarget.insertInto(personal);
+                break;
+            default:
+                throw new IllegalArgumentException("Unbekannter IMPORT_MODE: " + mode);
+        }
 
-            while (rs.next()) {
-                abteilungen.insertOne(new Document("abt_nr", nTrim(rs.getString("abt_nr")))
-                        .append("name", nTrim(rs.getString("name"))));
-                n++;
+        // Die drei Importe sind voneinander unabhängig und laufen parallel
+        List<Callable<Void>> jobs = new ArrayList<>();
+        if (!isLoaded(zielAbteilungen)) {
+            jobs.add(() -> { importAbteilungen(maria, zielAbteilungen, opts); return null; });
+        }
+        if (!isLoaded(zielGehalt)) {
+            jobs.add(() -> { importGehalt(maria, zielGehalt, opts); return null; });
+        }
+        if (!isLoaded(zielPersonal)) {
+            jobs.add(() -> { importPersonalMitEinbettungen(maria, zielPersonal, mergeJoin, opts); return null; });
+        }
+
+        ExecutorService imports = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Void>> running = new ArrayList<>();
+            for (Callable<Void> job : jobs) {
+                running.add(imports.submit(job));
             }
+            awaitAll(running);
+        } finally {
+            imports.shutdownNow();
+        }
 
-            System.out.println("Abteilungen importiert: " + n);
+        List<ImportTarget> ziele = List.of(zielAbteilungen, zielGehalt, zielPersonal);
+        switch (mode) {
+            case "sync":
+                // in der Quelle verschwundene Zeilen erst nach vollständigem Lesen löschen
+                for (ImportTarget z : ziele) {
+                    DeltaSync s = (DeltaSync) z;
+                    s.report(s.deleteMissing(opts.batchSize, opts.ordered));
+                }
+                break;
+            case "shadow":
+                // erst alle Schatten-Collections fertigstellen, dann tauschen
+                for (ImportTarget z : ziele) {
+                    ((ShadowLoad) z).finish();
+                }
+                for (ImportTarget z : ziele) {
+                    ((ShadowLoad) z).swap();
+                }
+                break;
+            default:
+                createIndexes(personal, abteilungen, gehalt);
         }
+
+        // Kennzahlen je Abteilung passend zum importierten Stand neu aufbauen
+        new FirmaCrud(db).rebuildAbteilungStats();
+
+        // Abschluss-Info
+        System.out.println("[OK] Import abgeschlossen.");
+        System.out.printf("     personal:    %d%n", personal.countDocuments());
+        System.out.printf("     abteilungen: %d%n", abteilungen.countDocuments());
+        System.out.printf("     gehalt:      %d%n", gehalt.countDocuments());
     }
 
     /**
-     * Liest alle Gehaltsstufen aus MariaDB und speichert sie in der Collection "gehalt".
+     * Gleichzeitige MariaDB-Verbindungen des personal-Imports: im Merge-Join personal und
+     * die drei Kind-Cursor, sonst personal und eine Verbindung für die Einzelabfragen.
+     * abteilungen und gehalt brauchen parallel je eine weitere.
+     */
+    static int personalConnections(boolean mergeJoin) {
+        return mergeJoin ? 4 : 2;
+    }
+
+    /**
+     * Liest die Konfiguration der Import-Pipeline aus der Umgebung.
+     */
+    private static ImportPipeline.Options pipelineOptions() {
+        return new ImportPipeline.Options(
+                Integer.parseInt(getenvOr("PIPELINE_BUILDERS", "1")),
+                Integer.parseInt(getenvOr("PIPELINE_WRITERS", "2")),
+                Integer.parseInt(getenvOr("PIPELINE_QUEUE", "1000")),
+                Integer.parseInt(getenvOr("MONGO_BATCH_SIZE", "1000")),
+                Boolean.parseBoolean(getenvOr("MONGO_ORDERED", "true")));
+    }
+
+    /**
+     * Legt die eindeutigen Indexe auf den fachlichen Schlüsseln an (idempotent).
      *
-     * @param maria Offene MariaDB-Verbindung
-     * @param gehalt Ziel-Collection in MongoDB
-     * @throws SQLException Falls ein SQL-Fehler auftritt
+     * @param personal Collection personal
+     * @param abteilungen Collection abteilungen
+     * @param gehalt Collection gehalt
      */
-    private static void importGehalt(Connection maria, MongoCollection<Document> gehalt) throws SQLException {
-        String sql = "SELECT geh_stufe, betrag FROM gehalt";
+    private static void createIndexes(MongoCollection<Document> personal, MongoCollection<Document> abteilungen,
+                                      MongoCollection<Document> gehalt) {
+        personal.createIndex(Indexes.ascending("pnr"), new IndexOptions().unique(true));
+        abteilungen.createIndex(Indexes.ascending("abt_nr"), new IndexOptions().unique(true));
+        gehalt.createIndex(Indexes.ascending("geh_stufe"), new IndexOptions().unique(true));
+    }
 
-        try (Statement st = maria.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            int n = 0;
+    /**
+     * Prüft, ob ein Schatten-Import bereits in einem früheren Lauf vollständig geladen wurde.
+     *
+     * @param ziel Importziel
+     * @return true, wenn nichts mehr zu lesen ist
+     */
+    private static boolean isLoaded(ImportTarget ziel) {
+        return ziel instanceof ShadowLoad && ((ShadowLoad) ziel).isLoaded();
+    }
 
-            while (rs.next()) {
-                gehalt.insertOne(new Document("geh_stufe", nTrim(rs.getString("geh_stufe")))
-                        .append("betrag", rs.getInt("betrag")));
-                n++;
+    /**
+     * Wartet auf alle Importe und reicht den ersten Fehler weiter.
+     *
+     * @param jobs laufende Importe
+     * @throws SQLException Falls ein Import mit einem SQL-Fehler abgebrochen ist
+     * @throws InterruptedException Falls der wartende Thread unterbrochen wird
+     */
+    private static void awaitAll(List<Future<Void>> jobs) throws SQLException, InterruptedException {
+        for (Future<Void> job : jobs) {
+            try {
+                job.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
             }
-            
-            System.out.println("Gehalt importiert: " + n);
         }
     }
 
+    /**
+     * Liest alle Abteilungen aus MariaDB und speichert sie als einzelne
+     * Dokumente in der Collection abteilungen.
+     *
+     * @param maria Quelle für MariaDB-Verbindungen
+     * @param ziel Ziel in MongoDB (Collection und Schreibweise je Modus)
+     * @param opts Konfiguration der Import-Pipeline
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static void importAbteilungen(ConnectionFactory maria, ImportTarget ziel,
+                                          ImportPipeline.Options opts) throws SQLException {
+        Object after = ziel.resumeAfter();
+        String sql = "SELECT abt_nr, name FROM abteilung" + afterKey("abt_nr", after) + " ORDER BY abt_nr";
+
+        ImportPhaseEvent event = new ImportPhaseEvent();
+        event.begin();
+        ImportPipeline<Document> pipeline = new ImportPipeline<>("abteilungen", ziel.collection(), opts, event.isEnabled());
+        long n = pipeline.run(
+                sink -> readRows(maria, sql, sink, params(after)),
+                row -> ziel.toWrite(new Document("abt_nr", nTrim(row.getString("abt_nr")))
+                        .append("name", nTrim(row.getString("name")))),
+                row -> row.get("abt_nr"),
+                ziel::reached);
+
+        phaseDone(event, "importAbteilungen", ziel, n, pipeline.bytesWritten());
+        System.out.println("Abteilungen importiert: " + n);
+    }
+
+    /**
+     * Liest alle Gehaltsstufen aus MariaDB und speichert sie in der Collection "gehalt".
+     *
+     * @param maria Quelle für MariaDB-Verbindungen
+     * @param ziel Ziel in MongoDB (Collection und Schreibweise je Modus)
+     * @param opts Konfiguration der Import-Pipeline
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static void importGehalt(ConnectionFactory maria, ImportTarget ziel,
+                                     ImportPipeline.Options opts) throws SQLException {
+        Object after = ziel.resumeAfter();
+        String sql = "SELECT geh_stufe, betrag FROM gehalt" + afterKey("geh_stufe", after) + " ORDER BY geh_stufe";
+
+        ImportPhaseEvent event = new ImportPhaseEvent();
+        event.begin();
+        ImportPipeline<Document> pipeline = new ImportPipeline<>("gehalt", ziel.collection(), opts, event.isEnabled());
+        long n = pipeline.run(
+                sink -> readRows(maria, sql, sink, params(after)),
+                row -> ziel.toWrite(new Document("geh_stufe", nTrim(row.getString("geh_stufe")))
+                        .append("betrag", intOrNull(row.get("betrag")))),
+                row -> row.get("geh_stufe"),
+                ziel::reached);
+
+        phaseDone(event, "importGehalt", ziel, n, pipeline.bytesWritten());
+        System.out.println("Gehalt importiert: " + n);
+    }
+
 
 /**
  * Liest alle Mitarbeiter aus MariaDB und ergänzt pro Mitarbeiter
  * eingebettete Arrays für Kinder, Prämien und Maschinen.
  * Nutzt die migrierte Struktur mit personal.kkid + Tabelle krankenversicherung.
- * @param maria Offene MariaDB-Verbindung
- * @param personal Ziel-Collection in MongoDB, in die die importierten Dokumente eingefügt werden
+ * Im Merge-Modus werden kind, praemie und maschine je genau einmal nach pnr
+ * sortiert gelesen und gegen den sortierten personal-Cursor gemischt, statt
+ * pro Mitarbeiter drei Einzelabfragen abzusetzen.
+ * @param maria Quelle für MariaDB-Verbindungen
+ * @param ziel Ziel in MongoDB (Collection und Schreibweise je Modus)
+ * @param mergeJoin true für den Merge-Join, false für Einzelabfragen je Mitarbeiter
+ * @param opts Konfiguration der Import-Pipeline
  * @throws SQLException Bei SQL Fehlern
  */
-private static void importPersonalMitEinbettungen(Connection maria, MongoCollection<Document> personal) throws SQLException {
+private static void importPersonalMitEinbettungen(ConnectionFactory maria, ImportTarget ziel,
+                                                  boolean mergeJoin, ImportPipeline.Options opts) throws SQLException {
+    Object after = ziel.resumeAfter();
+
+    ImportPhaseEvent event = new ImportPhaseEvent();
+    event.begin();
+    ImportPipeline<Document> pipeline = new ImportPipeline<>("personal", ziel.collection(), opts, event.isEnabled());
+    long n = pipeline.run(
+            sink -> readPersonal(maria, mergeJoin, after, sink),
+            row -> ziel.toWrite(buildPersonal(row)),
+            row -> row.get("pnr"),
+            ziel::reached);
+
+    phaseDone(event, "importPersonalMitEinbettungen", ziel, n, pipeline.bytesWritten());
+    System.out.println("Personal importiert: " + n);
+}
+
+/**
+ * Lesestufe für personal: liefert je Mitarbeiter die Rohspalten inklusive
+ * der bereits zugeordneten Kinder, Prämien und Maschinen.
+ * @param maria Quelle für MariaDB-Verbindungen
+ * @param mergeJoin true für den Merge-Join, false für Einzelabfragen je Mitarbeiter
+ * @param after Personalnummer, nach der fortgesetzt wird, oder null
+ * @param sink Eingang der Pipeline
+ * @throws SQLException Bei SQL Fehlern
+ */
+private static void readPersonal(ConnectionFactory maria, boolean mergeJoin, Object after,
+                                 ImportPipeline.RowSink<Document> sink) throws SQLException {
     String sqlP = 
     "SELECT p.pnr, p.name, p.vorname, p.geh_stufe, p.abt_nr, p.kkid, " +
     "kv.kuerzel AS kk_kuerzel " +
     "FROM personal p " +
-    "LEFT JOIN krankenversicherung kv ON kv.kkid = p.kkid";
-
-
-    try (Statement st =  maria.createStatement();
-         ResultSet rs = st.executeQuery(sqlP)) {
-        int n = 0;
+    "LEFT JOIN krankenversicherung kv ON kv.kkid = p.kkid" +
+    afterKey("p.pnr", after) +
+    " ORDER BY p.pnr";
+
+    String nachPnr = after == null ? "" : " AND pnr > ?";
+    Object[] params = params(after);
+
+    // Streamende Cursor brauchen je eine eigene Verbindung, sonst puffert der Treiber
+    // das offene Ergebnis vollständig. null-Ressourcen überspringt try-with-resources.
+    try (Connection con = maria.open();
+         PreparedStatement st = prepare(con, sqlP, params);
+         ResultSet rs = st.executeQuery();
+         Connection lookup = mergeJoin ? null : maria.open();
+         ChildCursor<Document> kinder = mergeJoin
+                 ? new ChildCursor<>(maria, "kind", "SELECT pnr, k_name, k_vorname, k_geb FROM kind " +
+                         "WHERE pnr IS NOT NULL" + nachPnr + " ORDER BY pnr", CRUDclient::mapKind, params) : null;
+         ChildCursor<Integer> praemien = mergeJoin
+                 ? new ChildCursor<>(maria, "praemie", "SELECT pnr, p_betrag FROM praemie " +
+                         "WHERE pnr IS NOT NULL" + nachPnr + " ORDER BY pnr", CRUDclient::mapPraemie, params) : null;
+         ChildCursor<Document> maschinen = mergeJoin
+                 ? new ChildCursor<>(maria, "maschine", "SELECT pnr, mnr, name, ansch_datum, neuwert, zeitwert FROM maschine " +
+                         "WHERE pnr IS NOT NULL" + nachPnr + " ORDER BY pnr, mnr", CRUDclient::mapMaschine, params) : null) {
+        String[] labels = labels(rs);
         while (rs.next()) {
             int pnr = rs.getInt("pnr");
 
-            Document doc = new Document("pnr", pnr)
-                .append("name", nTrim(rs.getString("name")))
-                .append("vorname", nTrim(rs.getString("vorname")))
-                .append("geh_stufe", nTrim(rs.getString("geh_stufe")))
-                .append("abt_nr", nTrim(rs.getString("abt_nr")))
-                // bevorzugt: Kürzel wie im Konzept
-                .append("krankenkasse", nTrim(rs.getString("kk_kuerzel")))
-                // optional zusätzlich (hilfreich fürs Debuggen/Analysen):
-                .append("kkid", rs.getObject("kkid") == null ? null : rs.getInt("kkid"))
-                .append("kinder", ladeKinder(maria, pnr))
-                .append("praemien", ladePraemien(maria, pnr))
-                .append("maschinen", ladeMaschinen(maria, pnr));
-
-            personal.insertOne(doc);
-            n++;
+            sink.accept(rawRow(rs, labels)
+                .append("kinder", mergeJoin ? kinder.takeFor(pnr) : ladeKinder(lookup, pnr))
+                .append("praemien", mergeJoin ? praemien.takeFor(pnr) : ladePraemien(lookup, pnr))
+                .append("maschinen", mergeJoin ? maschinen.takeFor(pnr) : ladeMaschinen(lookup, pnr)));
         }
-        System.out.println("Personal importiert: " + n);
     }
 }
 
+/**
+ * Builder-Stufe für personal: bildet eine Rohzeile auf das Zieldokument ab.
+ * @param row Rohzeile aus {@link #readPersonal}
+ * @return Mitarbeiter-Dokument
+ */
+private static Document buildPersonal(Document row) {
+    Document doc = new Document("pnr", intOrNull(row.get("pnr")))
+        .append("name", nTrim(row.getString("name")))
+        .append("vorname", nTrim(row.getString("vorname")))
+        .append("geh_stufe", nTrim(row.getString("geh_stufe")))
+        .append("abt_nr", nTrim(row.getString("abt_nr")))
+        // bevorzugt: Kürzel wie im Konzept
+        .append("krankenkasse", nTrim(row.getString("kk_kuerzel")))
+        // optional zusätzlich (hilfreich fürs Debuggen/Analysen):
+        .append("kkid", intOrNull(row.get("kkid")))
+        .append("kinder", row.get("kinder"))
+        .append("praemien", row.get("praemien"))
+        .append("maschinen", row.get("maschinen"));
+
+    return doc;
+}
+
+    /**
+     * Lesestufe für einfache Tabellen: übergibt jede Zeile als Rohdokument an die Pipeline.
+     *
+     * @param maria Quelle für MariaDB-Verbindungen
+     * @param sql auszuführendes SELECT
+     * @param sink Eingang der Pipeline
+     * @param params Parameter für die Platzhalter in sql
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static void readRows(ConnectionFactory maria, String sql,
+                                 ImportPipeline.RowSink<Document> sink, Object... params) throws SQLException {
+        try (Connection con = maria.open();
+             PreparedStatement st = prepare(con, sql, params);
+             ResultSet rs = st.executeQuery()) {
+            String[] labels = labels(rs);
+            while (rs.next()) {
+                sink.accept(rawRow(rs, labels));
+            }
+        }
+    }
+
+    /**
+     * Bereitet ein streamendes SELECT vor und setzt seine Parameter.
+     *
+     * @param con Offene MariaDB-Verbindung
+     * @param sql SELECT mit Platzhaltern
+     * @param params Parameterwerte
+     * @return vorbereitetes Statement
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static PreparedStatement prepare(Connection con, String sql, Object... params) throws SQLException {
+        PreparedStatement ps = StreamingQuery.prepare(con, sql);
+        try {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return ps;
+        } catch (SQLException e) {
+            ps.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Bedingung für das Fortsetzen eines Imports hinter einem Schlüssel.
+     *
+     * @param column Schlüsselspalte
+     * @param after letzter vollständig geschriebener Schlüssel oder null
+     * @return WHERE-Klausel mit Platzhalter, oder leer bei vollständigem Lauf
+     */
+    private static String afterKey(String column, Object after) {
+        return after == null ? "" : " WHERE " + column + " > ?";
+    }
+
+    /**
+     * @param after letzter vollständig geschriebener Schlüssel oder null
+     * @return Parameter passend zu {@link #afterKey(String, Object)}
+     */
+    private static Object[] params(Object after) {
+        return after == null ? new Object[0] : new Object[]{after};
+    }
+
+    /**
+     * Liest die Spaltenlabel eines ResultSets einmalig aus.
+     *
+     * @param rs ResultSet
+     * @return Spaltenlabel, Index 0 entspricht Spalte 1
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static String[] labels(ResultSet rs) throws SQLException {
+        ResultSetMetaData m = rs.getMetaData();
+        String[] labels = new String[m.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = m.getColumnLabel(i + 1);
+        }
+        return labels;
+    }
+
+    /**
+     * Kopiert die Spaltenwerte der aktuellen Zeile unverändert in ein Dokument,
+     * damit sie vom Leser-Thread an die Builder übergeben werden können.
+     *
+     * @param rs ResultSet, das auf einer Zeile steht
+     * @param labels Spaltenlabel aus {@link #labels(ResultSet)}
+     * @return Rohdokument mit Spaltenlabel als Schlüssel
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static Document rawRow(ResultSet rs, String[] labels) throws SQLException {
+        Document row = new Document();
+        for (int i = 0; i < labels.length; i++) {
+            row.append(labels[i], rs.getObject(i + 1));
+        }
+        return row;
+    }
 
     /**
      * Lädt alle Kinder zu einem Mitarbeiter und gibt sie als Liste von Dokumenten zurück.
@@ -170,17 +536,18 @@ private static void importPersonalMitEinbettungen(Connection maria, MongoCollect
 
         String sql = "SELECT k_name, k_vorname, k_geb FROM kind WHERE pnr = ?";
 
+        ChildLookupEvent event = new ChildLookupEvent();
+        event.begin();
         try (PreparedStatement ps = maria.prepareStatement(sql)) {
             ps.setInt(1, pnr);
             try (ResultSet rs = ps.executeQuery()) {
                 List<Document> list = new ArrayList<>();
 
                 while (rs.next()) {
-                    list.add(new Document("k_name", nTrim(rs.getString("k_name")))
-                            .append("k_vorname", nTrim(rs.getString("k_vorname")))
-                            .append("k_geb", rs.getInt("k_geb")));
+                    list.add(mapKind(rs));
                 }
 
+                lookupDone(event, "kind", pnr, list);
                 return list;
             }
         }
@@ -197,15 +564,18 @@ private static void importPersonalMitEinbettungen(Connection maria, MongoCollect
     private static List<Integer> ladePraemien(Connection maria, int pnr) throws SQLException {
         String sql = "SELECT p_betrag FROM praemie WHERE pnr = ?";
 
+        ChildLookupEvent event = new ChildLookupEvent();
+        event.begin();
         try (PreparedStatement ps = maria.prepareStatement(sql)) {
             ps.setInt(1, pnr);
             try (ResultSet rs = ps.executeQuery()) {
                 List<Integer> list = new ArrayList<>();
                 
                 while (rs.next()) {
-                    list.add(rs.getInt("p_betrag"));
+                    list.add(mapPraemie(rs));
                 }
 
+                lookupDone(event, "praemie", pnr, list);
                 return list;
             }
         }
@@ -222,24 +592,101 @@ private static void importPersonalMitEinbettungen(Connection maria, MongoCollect
     private static List<Document> ladeMaschinen(Connection maria, int pnr) throws SQLException {
         String sql = "SELECT mnr, name, ansch_datum, neuwert, zeitwert FROM maschine WHERE pnr = ?";
 
+        ChildLookupEvent event = new ChildLookupEvent();
+        event.begin();
         try (PreparedStatement ps = maria.prepareStatement(sql)) {
             ps.setInt(1, pnr);
             try (ResultSet rs = ps.executeQuery()) {
                 List<Document> list = new ArrayList<>();
                 
                 while (rs.next()) {
-                    list.add(new Document("mnr", rs.getInt("mnr"))
-                            .append("name", nTrim(rs.getString("name")))
-                            .append("ansch_datum", rs.getDate("ansch_datum"))
-                            .append("neuwert", rs.getInt("neuwert"))
-                            .append("zeitwert", rs.getInt("zeitwert")));
+                    list.add(mapMaschine(rs));
                 }
 
+                lookupDone(event, "maschine", pnr, list);
                 return list;
             }
         }
     }
 
+    /**
+     * Schließt das JFR-Ereignis einer Einzelabfrage ab; die Felder werden nur
+     * gesetzt, wenn das Ereignis tatsächlich aufgezeichnet wird.
+     */
+    private static void lookupDone(ChildLookupEvent event, String table, int pnr, List<?> rows) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = table;
+            event.pnr = pnr;
+            event.rows = rows.size();
+            event.bytes = BatchWriter.payloadBytes(rows);
+            event.commit();
+        }
+    }
+
+    /**
+     * Schließt das JFR-Ereignis einer Import-Phase ab.
+     */
+    private static void phaseDone(ImportPhaseEvent event, String phase, ImportTarget ziel, long rows, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.collection = ziel.collection().getNamespace().getCollectionName();
+            event.rows = rows;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Bildet die aktuelle Zeile aus kind auf ein Kinder-Dokument ab.
+     *
+     * @param rs ResultSet, das auf einer kind-Zeile steht
+     * @return Kinder-Dokument
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static Document mapKind(ResultSet rs) throws SQLException {
+        return new Document("k_name", nTrim(rs.getString("k_name")))
+                .append("k_vorname", nTrim(rs.getString("k_vorname")))
+                .append("k_geb", rs.getInt("k_geb"));
+    }
+
+    /**
+     * Liest den Prämienbetrag aus der aktuellen Zeile aus praemie.
+     *
+     * @param rs ResultSet, das auf einer praemie-Zeile steht
+     * @return Prämienbetrag
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static Integer mapPraemie(ResultSet rs) throws SQLException {
+        return rs.getInt("p_betrag");
+    }
+
+    /**
+     * Bildet die aktuelle Zeile aus maschine auf ein Maschinen-Dokument ab.
+     *
+     * @param rs ResultSet, das auf einer maschine-Zeile steht
+     * @return Maschinen-Dokument
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    private static Document mapMaschine(ResultSet rs) throws SQLException {
+        return new Document("mnr", rs.getInt("mnr"))
+                .append("name", nTrim(rs.getString("name")))
+                .append("ansch_datum", rs.getDate("ansch_datum"))
+                .append("neuwert", rs.getInt("neuwert"))
+                .append("zeitwert", rs.getInt("zeitwert"));
+    }
+
+    /**
+     * Wandelt einen numerischen Spaltenwert in Integer um (SMALLINT kommt als Short).
+     *
+     * @param v Spaltenwert oder null
+     * @return Integer oder null
+     */
+    private static Integer intOrNull(Object v) {
+        return v == null ? null : ((Number) v).intValue();
+    }
+
     /**
      * Trimt einen String sicher (behandelt null-Werte).
      *
@@ -257,7 +704,7 @@ private static void importPersonalMitEinbettungen(Connection maria, MongoCollect
      * @param def Standardwert, falls nicht gesetzt
      * @return Wert der Variable oder Standardwert
      */
-    private static String getenvOr(String key, String def) {
+    static String getenvOr(String key, String def) {
         String v = System.getenv(key);
         return (v == null || v.isEmpty()) ? def : v;
     }
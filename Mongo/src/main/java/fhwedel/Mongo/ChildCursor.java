@@ -0,0 +1,119 @@
+package fhwedel.Mongo;
+
+import fhwedel.JDBC.StreamingQuery;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor über eine nach pnr sortierte Kindtabelle (kind, praemie, maschine).
+ * Die Tabelle wird genau einmal gelesen; zu aufsteigend angefragten
+ * Personalnummern liefert {@link #takeFor(int)} jeweils die passenden Zeilen
+ * (Merge-Join gegen den ebenfalls nach pnr sortierten personal-Cursor).
+ * Im Speicher liegen dabei nur die Kinder des aktuellen Mitarbeiters.
+ * Der Cursor streamt und nutzt deshalb eine eigene Verbindung (siehe
+ * {@link StreamingQuery}), die beim Schließen mit geschlossen wird.
+ * Vom Öffnen bis zum Schließen wird ein {@link ChildLookupEvent} aufgezeichnet.
+ *
+ * @param <T> Typ der gemappten Kindzeile
+ */
+final class ChildCursor<T> implements AutoCloseable {
+
+    /**
+     * Bildet die aktuelle Zeile eines ResultSets auf ein Objekt ab.
+     * @param <T> Zieltyp
+     */
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private final Connection con;
+    private final PreparedStatement st;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private final ChildLookupEvent event = new ChildLookupEvent();
+    private final boolean countBytes = event.isEnabled();
+
+    private boolean hasRow;
+    private int rowPnr;
+
+    /**
+     * Öffnet den Cursor auf einer neuen Verbindung.
+     * @param maria Quelle für MariaDB-Verbindungen
+     * @param table Name der Kindtabelle (für das JFR-Ereignis)
+     * @param sql SELECT, das eine Spalte pnr enthält und nach pnr sortiert ist
+     * @param mapper Abbildung einer Zeile
+     * @param params Parameter für die Platzhalter in sql
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    ChildCursor(CRUDclient.ConnectionFactory maria, String table, String sql, RowMapper<T> mapper,
+                Object... params) throws SQLException {
+        event.begin();
+        event.table = table;
+        event.pnr = -1;
+        this.con = maria.open();
+        this.mapper = mapper;
+        PreparedStatement ps = null;
+        try {
+            ps = StreamingQuery.prepare(con, sql);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            this.st = ps;
+            this.rs = ps.executeQuery();
+            advance();
+        } catch (SQLException e) {
+            if (ps != null) {
+                ps.close();
+            }
+            con.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Liefert alle Zeilen zur angegebenen Personalnummer. Die Personalnummern
+     * müssen aufsteigend angefragt werden; Zeilen mit kleinerer pnr ohne
+     * passenden Mitarbeiter werden übersprungen.
+     *
+     * @param pnr Personalnummer
+     * @return Liste der Kindzeilen (ggf. leer)
+     * @throws SQLException Falls ein SQL-Fehler auftritt
+     */
+    List<T> takeFor(int pnr) throws SQLException {
+        while (hasRow && rowPnr < pnr) {
+            advance();
+        }
+
+        List<T> list = new ArrayList<>();
+        while (hasRow && rowPnr == pnr) {
+            list.add(mapper.map(rs));
+            advance();
+        }
+        event.rows += list.size();
+        if (countBytes) {
+            event.bytes += BatchWriter.payloadBytes(list);
+        }
+        return list;
+    }
+
+    private void advance() throws SQLException {
+        hasRow = rs.next();
+        if (hasRow) {
+            rowPnr = rs.getInt("pnr");
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (con; st) {
+            rs.close();
+        } finally {
+            event.commit();
+        }
+    }
+}
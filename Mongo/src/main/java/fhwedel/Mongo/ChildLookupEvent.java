@@ -0,0 +1,34 @@
+package fhwedel.Mongo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-Ereignis für das Laden von Kindzeilen (kind, praemie, maschine): im
+ * Einzelabfrage-Modus je Mitarbeiter, im Merge-Modus einmal je {@link ChildCursor}.
+ */
+@Name("fhwedel.ChildLookup")
+@Label("Kindzeilen laden")
+@Category({"DBTI25", "Import"})
+@StackTrace(false)
+public final class ChildLookupEvent extends jdk.jfr.Event {
+
+    @Label("Tabelle")
+    public String table;
+
+    @Label("Personalnummer")
+    @Description("-1 für einen Merge-Cursor über alle Mitarbeiter")
+    public int pnr;
+
+    @Label("Zeilen")
+    public long rows;
+
+    @Label("Bytes")
+    @Description("Nutzdaten der gelesenen Zeilen, geschätzt aus den gemappten Werten")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,149 @@
+package fhwedel.Mongo;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Delta-Abgleich einer Collection gegen die Quelltabelle. Jedes importierte
+ * Dokument trägt einen Inhalts-Hash ({@link #HASH_FIELD}); beim Abgleich wird
+ * nur geschrieben, was neu ist oder sich geändert hat (Replace mit Upsert über
+ * den fachlichen Schlüssel). Schlüssel, die in der Quelle nicht mehr vorkommen,
+ * werden am Ende gelöscht. Die Collection bleibt dabei durchgehend gefüllt.
+ * Schreibzugriffe über {@link FirmaCrud} und {@link FirmaCrudAsync} entfernen den Hash,
+ * weil er dann nicht mehr das Dokument beschreibt; der nächste Abgleich schreibt es neu.
+ * Thread-safe, damit mehrere Builder der Pipeline gleichzeitig prüfen können.
+ */
+final class DeltaSync implements ImportTarget {
+
+    /** Feld, in dem der Inhalts-Hash eines importierten Dokuments steht. */
+    static final String HASH_FIELD = "sync_hash";
+
+    /** Codec mit der Registry des Treibers (kennt u. a. java.sql.Date aus JDBC). */
+    private static final DocumentCodec CODEC = new DocumentCodec(MongoClientSettings.getDefaultCodecRegistry());
+
+    private final MongoCollection<Document> collection;
+    private final String keyField;
+
+    /** Schlüssel → Hash aller Dokumente, die in der Quelle (noch) nicht gesehen wurden. */
+    private final Map<Object, String> remaining = new ConcurrentHashMap<>();
+
+    private final AtomicLong changed   = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+
+    /**
+     * Lädt Schlüssel und Hash aller vorhandenen Dokumente der Collection.
+     * @param collection abzugleichende Collection
+     * @param keyField fachlicher Schlüssel (pnr, abt_nr, geh_stufe)
+     */
+    DeltaSync(MongoCollection<Document> collection, String keyField) {
+        this.collection = collection;
+        this.keyField   = keyField;
+
+        for (Document d : collection.find()
+                .projection(Projections.fields(Projections.include(keyField, HASH_FIELD), Projections.excludeId()))) {
+            Object key = d.get(keyField);
+            if (key != null) {
+                // Dokumente ohne Hash (von FirmaCrud angelegt oder geändert) gelten als geändert
+                remaining.put(key, d.get(HASH_FIELD, ""));
+            }
+        }
+    }
+
+    @Override
+    public MongoCollection<Document> collection() {
+        return collection;
+    }
+
+    /**
+     * Builder-Schritt: liefert die nötige Schreiboperation für ein Quelldokument.
+     * @param doc aus der Quelle gebautes Dokument (ohne Hash)
+     * @return Replace mit Upsert, oder null, wenn das Dokument unverändert ist
+     */
+    @Override
+    public WriteModel<Document> toWrite(Document doc) {
+        Object key  = doc.get(keyField);
+        String hash = hash(doc);
+        String old  = remaining.remove(key);
+
+        if (hash.equals(old)) {
+            unchanged.incrementAndGet();
+            return null;
+        }
+
+        changed.incrementAndGet();
+        return new ReplaceOneModel<>(eq(keyField, key), doc.append(HASH_FIELD, hash),
+                new ReplaceOptions().upsert(true));
+    }
+
+    /**
+     * Löscht alle Dokumente, deren Schlüssel in der Quelle nicht mehr vorkamen.
+     * Erst aufrufen, wenn der Import vollständig durchgelaufen ist.
+     * @param batchSize Löschoperationen pro bulkWrite
+     * @param ordered geordnete oder ungeordnete bulkWrites
+     * @return Anzahl der gelöschten Schlüssel
+     */
+    long deleteMissing(int batchSize, boolean ordered) {
+        long n = 0;
+
+        try (BatchWriter w = new BatchWriter(collection, batchSize, ordered)) {
+            for (Object key : remaining.keySet()) {
+                w.add(new DeleteManyModel<>(eq(keyField, key)));
+                n++;
+            }
+        }
+
+        remaining.clear();
+        return n;
+    }
+
+    /**
+     * Gibt die Zahlen des Abgleichs aus.
+     * @param deleted Rückgabewert von {@link #deleteMissing}
+     */
+    void report(long deleted) {
+        System.out.printf("[SYNC] %s: %d neu/geändert, %d unverändert, %d gelöscht%n",
+                collection.getNamespace().getCollectionName(), changed.get(), unchanged.get(), deleted);
+    }
+
+    /**
+     * Ergänzt ein Dokument um seinen Inhalts-Hash (für den Vollimport, damit der
+     * nächste Abgleich nur noch Änderungen schreibt).
+     * @param doc Dokument ohne Hash
+     * @return dasselbe Dokument mit Hash
+     */
+    static Document withHash(Document doc) {
+        return doc.append(HASH_FIELD, hash(doc));
+    }
+
+    /**
+     * Berechnet den Inhalts-Hash über die JSON-Darstellung des Dokuments.
+     * @param doc Dokument ohne Hash
+     * @return Base64-kodierter MD5-Hash
+     */
+    static String hash(Document doc) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(doc.toJson(CODEC).getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,24 +1,75 @@
 package fhwedel.Mongo;
 
+import fhwedel.JDBC.ReferenceCache;
+
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Updates.*;
 
 public class FirmaCrud {
 
+    /** Hilfsfeld in gehalt, das {@link #updateGehaltPercentBulk} während einer Runde setzt. */
+    static final String RUNDE_FIELD = "gehalt_runde";
+
+    /** Projektion für Listen: nur Stammdaten, ohne kinder/praemien/maschinen und _id. */
+    public static final Bson STAMMDATEN = Projections.fields(
+            Projections.include("pnr", "name", "vorname", "abt_nr", "geh_stufe", "krankenkasse"),
+            Projections.excludeId());
+
+    /** Gepflegte Kennzahlen: ein Dokument {_id: abt_nr, anzahl} je Abteilung. */
+    public static final String ABTEILUNG_STATS = "personal_je_abteilung";
+
+    private static final String[] EINBETTUNGEN = {"kinder", "praemien", "maschinen"};
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    /** Standardgröße für Cursor-Batches und Seiten. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
     private final MongoCollection<Document> personal;
     private final MongoCollection<Document> gehalt;
+    private final MongoCollection<Document> abteilungen;
+    private final MongoCollection<Document> abteilungStats;
+
+    /** Gehaltsstufe -> Betrag; wird bei Gehaltsänderungen invalidiert. */
+    private final ReferenceCache<String, Integer> gehaltCache = new ReferenceCache<>("gehalt", 10 * 60_000, 64);
+
+    /** Abteilungsname -> abt_nr. */
+    private final ReferenceCache<String, String> abteilungCache = new ReferenceCache<>("abteilungen", 10 * 60_000, 256);
 
 
     /**
@@ -29,13 +80,17 @@ public class FirmaCrud {
     public FirmaCrud(MongoDatabase db) {
         this.personal = db.getCollection("personal");
         this.gehalt   = db.getCollection("gehalt");
+        this.abteilungen = db.getCollection("abteilungen");
+        this.abteilungStats = db.getCollection(ABTEILUNG_STATS);
     }
 
     
 
     /**
-     * Legt einen neuen Mitarbeiter in der Collection personal an. Falls bereits ein Datensatz mit der
-     * angegebenen Personalnummer existiert, wird dieser vorher gelöscht (idempotentes Verhalten)
+     * Legt einen Mitarbeiter in der Collection personal an bzw. aktualisiert seine Stammdaten
+     * (idempotentes Verhalten). Das geschieht in einer einzigen Upsert-Operation auf dem Server,
+     * es gibt also keinen Moment, in dem der Mitarbeiter fehlt. Vorhandene Einbettungen
+     * (kinder, praemien, maschinen) bleiben erhalten; neue Dokumente bekommen leere Arrays.
      * @param pnr Eindeutige Personalnummer
      * @param name Nachname des Mitarbeiters
      * @param vorname Vorname des Mitarbeiters
@@ -46,31 +101,128 @@ public class FirmaCrud {
      */
     public boolean createPersonal(int pnr, String name, String vorname,
                                   String abtNr, String gehStufe, String krankenkasse) {
-        assert pnr > 0;
-        
-        // einfache Validierung
-        if (pnr <= 0){
-            throw new IllegalArgumentException("pnr muss > 0 sein");
-        }
-
-        name        = nTrim(name);
-        vorname     = nTrim(vorname);
-        abtNr       = nTrim(abtNr);
-        gehStufe    = nTrim(gehStufe);
-        krankenkasse= nTrim(krankenkasse);
-
-        // idempotent: vorhandenen Datensatz entfernen
-        personal.deleteOne(eq("pnr", pnr));
+        return createPersonal(pnr, name, vorname, abtNr, gehStufe, krankenkasse, null, null, null);
+    }
 
+    /**
+     * Wie {@link #createPersonal(int, String, String, String, String, String)}, ersetzt aber die
+     * Einbettungen, für die eine Liste übergeben wird; bei null bleiben sie unverändert.
+     * @param pnr Eindeutige Personalnummer
+     * @param name Nachname des Mitarbeiters
+     * @param vorname Vorname des Mitarbeiters
+     * @param abtNr Abteilungsnummer
+     * @param gehStufe Gehaltsstuffe
+     * @param krankenkasse kürzel der Krankenkasse
+     * @param kinder neue Kinder oder null
+     * @param praemien neue Prämien oder null
+     * @param maschinen neue Maschinen oder null
+     * @return true, wenn der Mitarbeiter neu angelegt wurde, ansonsten false
+     */
+    public boolean createPersonal(int pnr, String name, String vorname,
+                                  String abtNr, String gehStufe, String krankenkasse,
+                                  List<?> kinder, List<?> praemien, List<?> maschinen) {
         var doc = new Document("pnr", pnr)
                 .append("name", name)
                 .append("vorname", vorname)
                 .append("abt_nr", abtNr)
                 .append("geh_stufe", gehStufe)
                 .append("krankenkasse", krankenkasse);
+        if (kinder != null)    doc.append("kinder", kinder);
+        if (praemien != null)  doc.append("praemien", praemien);
+        if (maschinen != null) doc.append("maschinen", maschinen);
+
+        // Vorabbild nur mit abt_nr: null = neu angelegt, sonst ggf. Abteilungswechsel
+        Document vorher = personal.findOneAndUpdate(eq("pnr", pnr), personalUpsert(doc),
+                new FindOneAndUpdateOptions()
+                        .upsert(true)
+                        .projection(Projections.include("abt_nr"))
+                        .returnDocument(ReturnDocument.BEFORE));
+
+        Map<String, Integer> delta = new HashMap<>();
+        if (vorher != null) {
+            wechsel(delta, vorher.getString("abt_nr"), nTrim(abtNr));
+        } else {
+            delta.merge(nTrim(abtNr), 1, Integer::sum);
+        }
+        applyAbteilungDelta(delta);
+        return vorher == null;
+    }
+
+    /**
+     * Legt viele Mitarbeiter mit einem ungeordneten Bulk-Write an bzw. aktualisiert sie,
+     * mit derselben Semantik wie {@link #createPersonal}. Jedes Dokument braucht eine pnr;
+     * enthaltene kinder/praemien/maschinen ersetzen die vorhandenen.
+     * @param mitarbeiter Dokumente mit pnr, name, vorname, abt_nr, geh_stufe, krankenkasse
+     * @return BulkWriteResult: {@code getUpserts().size()} neu angelegt,
+     *         {@code getModifiedCount()} geändert
+     * @throws IllegalArgumentException bei fehlender oder ungültiger pnr
+     */
+    public BulkWriteResult createPersonalBulk(List<Document> mitarbeiter) {
+        var models = new ArrayList<WriteModel<Document>>(mitarbeiter.size());
+        for (Document d : mitarbeiter) {
+            Object pnr = d.get("pnr");
+            if (!(pnr instanceof Number) || ((Number) pnr).intValue() <= 0) {
+                throw new IllegalArgumentException("pnr muss > 0 sein: " + pnr);
+            }
+            models.add(new UpdateOneModel<>(eq("pnr", ((Number) pnr).intValue()), personalUpsert(d), UPSERT));
+        }
+        if (models.isEmpty()) {
+            return BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of());
+        }
+
+        // bisherige Abteilungen für die Kennzahlen (ein Roundtrip für alle)
+        Map<Integer, String> alt = new HashMap<>();
+        var pnrs = new ArrayList<Integer>();
+        for (Document d : mitarbeiter) pnrs.add(((Number) d.get("pnr")).intValue());
+        for (var d : personal.find(in("pnr", pnrs)).projection(Projections.include("pnr", "abt_nr"))) {
+            alt.put(((Number) d.get("pnr")).intValue(), d.getString("abt_nr"));
+        }
 
-        personal.insertOne(doc);
-        return true;
+        BulkWriteResult res;
+        try {
+            res = personal.bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } catch (RuntimeException e) {
+            // teilweise geschrieben: Kennzahlen lassen sich nicht sicher ableiten
+            rebuildAbteilungStats();
+            throw e;
+        }
+
+        Map<String, Integer> delta = new HashMap<>();
+        for (Document d : mitarbeiter) {
+            int pnr = ((Number) d.get("pnr")).intValue();
+            String neu = nTrim(d.getString("abt_nr"));
+            if (alt.containsKey(pnr)) {
+                wechsel(delta, alt.get(pnr), neu);
+            } else {
+                delta.merge(neu, 1, Integer::sum);
+            }
+            alt.put(pnr, neu); // doppelte pnr in der Eingabe nur einmal zählen
+        }
+        applyAbteilungDelta(delta);
+        return res;
+    }
+
+    /**
+     * Hilfsfunktion
+     * Baut das Upsert-Update: Stammdaten per $set, Einbettungen per $set, falls
+     * übergeben, sonst per $setOnInsert als leere Arrays.
+     */
+    static Bson personalUpsert(Document d) {
+        if (((Number) d.get("pnr")).intValue() <= 0) {
+            throw new IllegalArgumentException("pnr muss > 0 sein");
+        }
+
+        var updates = new ArrayList<Bson>();
+        for (String f : new String[]{"name", "vorname", "abt_nr", "geh_stufe", "krankenkasse"}) {
+            Object v = d.get(f);
+            updates.add(set(f, v instanceof String ? nTrim((String) v) : v));
+        }
+        for (String f : EINBETTUNGEN) {
+            updates.add(d.containsKey(f) ? set(f, d.get(f)) : setOnInsert(f, List.of()));
+        }
+        // von der Anwendung geschrieben: der nächste Delta-Abgleich soll das Dokument prüfen
+        updates.add(unset(DeltaSync.HASH_FIELD));
+        return combine(updates);
     }
 
     
@@ -89,6 +241,107 @@ public class FirmaCrud {
         return out;
     }
 
+    /**
+     * Liest Mitarbeiter-Dokumente als lazy Stream über einen Server-Cursor: es werden
+     * jeweils nur {@code batchSize} Dokumente übertragen und im Speicher gehalten.
+     * Der Stream muss geschlossen werden (try-with-resources), sonst bleibt der Cursor offen.
+     * @param filter MongoDB-Filter oder null für alle
+     * @param projection Projektion (z. B. {@link #STAMMDATEN}) oder null für ganze Dokumente
+     * @param batchSize Dokumente pro getMore
+     * @return Stream der gefundenen Dokumente
+     */
+    public Stream<Document> streamPersonal(Bson filter, Bson projection, int batchSize) {
+        var find = personal.find(filter == null ? new Document() : filter).batchSize(batchSize);
+        if (projection != null) {
+            find = find.projection(projection);
+        }
+        MongoCursor<Document> cursor = find.cursor();
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
+    /**
+     * Liest eine Seite per Keyset-Paginierung auf pnr: {@code pnr > afterPnr}, aufsteigend
+     * sortiert, höchstens {@code pageSize} Dokumente. Anders als skip/limit bleibt jede Seite
+     * ein Indexbereich, unabhängig davon, wie weit hinten sie liegt.
+     * @param filter MongoDB-Filter oder null für alle
+     * @param projection Projektion oder null; muss pnr enthalten
+     * @param afterPnr letzte pnr der vorherigen Seite oder null für die erste Seite
+     * @param pageSize maximale Seitengröße
+     * @return die Seite samt Schlüssel für die nächste
+     * @throws IllegalArgumentException falls die Projektion pnr entfernt
+     */
+    public PersonalPage readPersonalPage(Bson filter, Bson projection, Integer afterPnr, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize muss >= 1 sein");
+        }
+
+        var bedingungen = new ArrayList<Bson>();
+        if (filter != null) {
+            bedingungen.add(filter);
+        }
+        if (afterPnr != null) {
+            bedingungen.add(gt("pnr", afterPnr));
+        }
+        Bson keyset = bedingungen.isEmpty() ? new Document()
+                : bedingungen.size() == 1 ? bedingungen.get(0) : and(bedingungen);
+
+        var find = personal.find(keyset).sort(Sorts.ascending("pnr")).limit(pageSize).batchSize(pageSize);
+        if (projection != null) {
+            find = find.projection(projection);
+        }
+        List<Document> items = find.into(new ArrayList<>(Math.min(pageSize, DEFAULT_BATCH_SIZE)));
+
+        Integer next = null;
+        if (items.size() == pageSize) {
+            Object last = items.get(items.size() - 1).get("pnr");
+            if (!(last instanceof Number)) {
+                throw new IllegalArgumentException("Projektion muss pnr enthalten");
+            }
+            next = ((Number) last).intValue();
+        }
+        return new PersonalPage(items, next);
+    }
+
+    /**
+     * Liest alle Treffer seitenweise per {@link #readPersonalPage} als lazy Stream: die nächste
+     * Seite wird erst geholt, wenn die vorige verbraucht ist. Es bleibt kein Cursor offen.
+     * @param filter MongoDB-Filter oder null für alle
+     * @param projection Projektion oder null; muss pnr enthalten
+     * @param pageSize Seitengröße
+     * @return Stream der Dokumente aufsteigend nach pnr
+     */
+    public Stream<Document> streamPersonalPaged(Bson filter, Bson projection, int pageSize) {
+        Iterator<Document> it = new Iterator<>() {
+            private PersonalPage page = readPersonalPage(filter, projection, null, pageSize);
+            private int pos;
+
+            @Override
+            public boolean hasNext() {
+                if (pos < page.items().size()) {
+                    return true;
+                }
+                if (!page.hasNext()) {
+                    return false;
+                }
+                page = readPersonalPage(filter, projection, page.nextAfter(), pageSize);
+                pos = 0;
+                return !page.items().isEmpty();
+            }
+
+            @Override
+            public Document next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.items().get(pos++);
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     /** Liest eine Person per pnr. */
     public Document readPersonalByPnr(int pnr) {
         return personal.find(eq("pnr", pnr)).first();
@@ -96,31 +349,167 @@ public class FirmaCrud {
 
 
     
+    /**
+     * Liefert den Betrag einer Gehaltsstufe aus dem Cache bzw. aus der Collection gehalt.
+     * @param stufe Gehaltsstufe
+     * @return Betrag oder null, falls die Stufe nicht existiert
+     */
+    public Integer gehaltBetrag(String stufe) {
+        return gehaltCache.get(nTrim(stufe), k -> {
+            var d = gehalt.find(eq("geh_stufe", k)).projection(Projections.include("betrag")).first();
+            return d == null ? null : ((Number) d.get("betrag")).intValue();
+        });
+    }
+
+    /**
+     * Liefert die abt_nr zu einem Abteilungsnamen aus dem Cache bzw. aus der Collection abteilungen.
+     * @param name Abteilungsname
+     * @return abt_nr oder null, falls die Abteilung nicht existiert
+     */
+    public String abtNrByName(String name) {
+        return abteilungCache.get(nTrim(name), k -> {
+            var d = abteilungen.find(eq("name", k)).projection(Projections.include("abt_nr")).first();
+            return d == null ? null : d.getString("abt_nr");
+        });
+    }
+
+    /**
+     * @return Statistik der Stammdaten-Caches
+     */
+    public String cacheStats() {
+        return gehaltCache.stats() + "; " + abteilungCache.stats();
+    }
+
+
     /**
      * Erhöt den Betrag einer bestimmten Gehaltsstufe prozentual. Der neue Betrag wird auf eine Ganzzahl
-     * gerundet
+     * gerundet. Berechnung und Rundung laufen per Pipeline-Update auf dem Server
+     * (ein Roundtrip, keine verlorenen Updates bei gleichzeitigen Erhöhungen).
      * @param stufe Gehaltsstufe, die angepasst werden soll
      * @param percentPlus Prozentualler Zuschlag
      * @return Array mit zwei Werten, den alten und den neuen Betrag
-     * @throws IllegalStateException Wenn Gehaltstufe nicht gefunden wird oder Update fehlschlägt
+     * @throws NotFoundException Wenn die Gehaltsstufe nicht gefunden wird
      */
     public int[] updateGehaltPercent(String stufe, double percentPlus) {
         Objects.requireNonNull(stufe, "stufe");
-        var doc = gehalt.find(eq("geh_stufe", stufe)).first();
-        
+        double factor = 1.0 + percentPlus / 100.0;
+
+        var doc = gehalt.findOneAndUpdate(eq("geh_stufe", stufe), raisePipeline(factor),
+                new FindOneAndUpdateOptions()
+                        .projection(Projections.include("betrag"))
+                        .returnDocument(ReturnDocument.BEFORE));
+        gehaltCache.invalidate(stufe);
+
         if (doc == null){
-            throw new IllegalStateException("Gehaltsstufe nicht gefunden: " + stufe);
+            throw new NotFoundException("Gehaltsstufe nicht gefunden: " + stufe);
         }
 
         int alt = ((Number) doc.get("betrag")).intValue();
-        int neu = Math.toIntExact(Math.round(alt * (1.0 + percentPlus / 100.0)));
-        
-        UpdateResult res = gehalt.updateOne(eq("geh_stufe", stufe), set("betrag", neu));
-       
-        if (res.getMatchedCount() == 0){
-            throw new IllegalStateException("Update fehlgeschlagen (match=0).");
+        return new int[]{alt, rounded(alt, factor)};
+    }
+
+    /**
+     * Erhöht mehrere Gehaltsstufen in einem Schritt (z. B. jährliche Gehaltsrunde).
+     * Ein find prüft vorab alle Stufen; fehlt eine, wird nichts geschrieben. Danach ein
+     * Bulk-Write mit je einem Pipeline-Update wie in {@link #updateGehaltPercent}, das den
+     * alten Betrag unter {@value #RUNDE_FIELD} mit einer Rundenkennung ablegt. Ein zweites
+     * find liest diese alten Beträge, ein updateMany entfernt das Feld wieder. So wird jede
+     * Stufe genau einmal erhöht und der alte Betrag stimmt auch bei gleichzeitigen Schreibern;
+     * die Zahl der Roundtrips (vier) hängt nicht von der Zahl der Stufen ab.
+     * @param percentByStufe Gehaltsstufe -> prozentualer Zuschlag
+     * @return Gehaltsstufe -> {alter Betrag, neuer Betrag}
+     * @throws NotFoundException Wenn eine Gehaltsstufe nicht gefunden wird (dann ist keine erhöht)
+     */
+    public Map<String, int[]> updateGehaltPercentBulk(Map<String, Double> percentByStufe) {
+        var out = new LinkedHashMap<String, int[]>();
+        if (percentByStufe.isEmpty()) {
+            return out;
+        }
+
+        var fehlend = new ArrayList<>(percentByStufe.keySet());
+        for (var d : gehalt.find(in("geh_stufe", percentByStufe.keySet()))
+                .projection(Projections.include("geh_stufe"))) {
+            fehlend.remove(d.getString("geh_stufe"));
+        }
+        if (!fehlend.isEmpty()) {
+            throw new NotFoundException("Gehaltsstufe nicht gefunden: " + fehlend);
+        }
+
+        var runde = new ObjectId();
+        var models = new ArrayList<WriteModel<Document>>();
+        for (var e : percentByStufe.entrySet()) {
+            var pipeline = new ArrayList<Bson>();
+            pipeline.add(new Document("$set", new Document(RUNDE_FIELD,
+                    new Document("id", runde).append("alt", "$betrag"))));
+            pipeline.addAll(raisePipeline(1.0 + e.getValue() / 100.0));
+            models.add(new UpdateOneModel<>(eq("geh_stufe", e.getKey()), pipeline));
+        }
+
+        try {
+            gehalt.bulkWrite(models, new BulkWriteOptions().ordered(false));
+            for (var d : gehalt.find(eq(RUNDE_FIELD + ".id", runde))
+                    .projection(Projections.include("geh_stufe", RUNDE_FIELD + ".alt"))) {
+                String stufe = d.getString("geh_stufe");
+                int alt = ((Number) d.get(RUNDE_FIELD, Document.class).get("alt")).intValue();
+                out.put(stufe, new int[]{alt, rounded(alt, 1.0 + percentByStufe.get(stufe) / 100.0)});
+            }
+        } finally {
+            gehalt.updateMany(eq(RUNDE_FIELD + ".id", runde), unset(RUNDE_FIELD));
+            gehaltCache.invalidateAll();
         }
-        return new int[]{alt, neu};
+        if (out.size() < percentByStufe.size()) {
+            // zwischen Prüfung und Bulk-Write gelöscht
+            var geloescht = new ArrayList<>(percentByStufe.keySet());
+            geloescht.removeAll(out.keySet());
+            throw new NotFoundException("Gehaltsstufe nicht gefunden: " + geloescht);
+        }
+        return out;
+    }
+
+    /**
+     * Übernimmt bereits berechnete Beträge (z. B. aus {@link fhwedel.JDBC.SalaryAdjustment})
+     * mit einem einzigen Bulk-Write in die Collection gehalt. Fehlende Stufen werden angelegt;
+     * die Schlüssel müssen wie in MariaDB geschrieben sein (SalaryAdjustment liefert sie so).
+     * @param altNeuByStufe Gehaltsstufe -> {alter Betrag, neuer Betrag}
+     * @return Ergebnis des Bulk-Writes
+     */
+    public BulkWriteResult pushGehalt(Map<String, int[]> altNeuByStufe) {
+        if (altNeuByStufe.isEmpty()) {
+            return BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of());
+        }
+        var models = new ArrayList<WriteModel<Document>>();
+        for (var e : altNeuByStufe.entrySet()) {
+            models.add(new UpdateOneModel<>(eq("geh_stufe", nTrim(e.getKey())), combine(set("betrag", e.getValue()[1]), unset(DeltaSync.HASH_FIELD)), UPSERT));
+        }
+        try {
+            return gehalt.bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } finally {
+            gehaltCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Hilfsfunktion
+     * Pipeline-Stufe: betrag = floor(betrag * factor + 0.5), also dieselbe Rundung
+     * wie {@link Math#round(double)} und {@link #rounded(int, double)}.
+     */
+    static Bson raise(double factor) {
+        return new Document("$set", new Document("betrag",
+                new Document("$toInt", new Document("$floor", new Document("$add", List.of(
+                        new Document("$multiply", List.of("$betrag", factor)), 0.5))))));
+    }
+
+    /**
+     * Hilfsfunktion
+     * Update-Pipeline für eine Erhöhung: {@link #raise(double)}, dann den Sync-Hash entfernen,
+     * damit der nächste Delta-Abgleich das Dokument mit MariaDB vergleicht.
+     */
+    static List<Bson> raisePipeline(double factor) {
+        return List.of(raise(factor), new Document("$unset", DeltaSync.HASH_FIELD));
+    }
+
+    static int rounded(int betrag, double factor) {
+        return Math.toIntExact(Math.round(betrag * factor));
     }
 
    
@@ -135,7 +524,7 @@ public class FirmaCrud {
      * @throws IllegalArgumentException falls keine der übergebenen Felder gesetzt ist
      */
     public UpdateResult updatePersonal(int pnr, String abtNr, String gehStufe, String krankenkasse) {
-        var updates = new ArrayList<org.bson.conversions.Bson>();
+        var updates = new ArrayList<Bson>();
 
         if (abtNr != null){        
             updates.add(set("abt_nr", nTrim(abtNr)));
@@ -152,8 +541,29 @@ public class FirmaCrud {
         if (updates.isEmpty()){ 
             throw new IllegalArgumentException("Keine zu ändernden Felder gesetzt.");
         }
+        updates.add(unset(DeltaSync.HASH_FIELD));
 
-        return personal.updateOne(eq("pnr", pnr), combine(updates));
+        if (abtNr == null) {
+            return personal.updateOne(eq("pnr", pnr), combine(updates));
+        }
+
+        // Abteilungswechsel: Vorabbild für die Kennzahlen, weiterhin ein Roundtrip
+        Document vorher = personal.findOneAndUpdate(eq("pnr", pnr), combine(updates),
+                new FindOneAndUpdateOptions()
+                        .projection(Projections.include("abt_nr", "geh_stufe", "krankenkasse"))
+                        .returnDocument(ReturnDocument.BEFORE));
+        if (vorher == null) {
+            return UpdateResult.acknowledged(0, 0L, null);
+        }
+
+        Map<String, Integer> delta = new HashMap<>();
+        wechsel(delta, vorher.getString("abt_nr"), nTrim(abtNr));
+        applyAbteilungDelta(delta);
+
+        boolean geaendert = !Objects.equals(vorher.getString("abt_nr"), nTrim(abtNr))
+                || (gehStufe != null && !Objects.equals(vorher.getString("geh_stufe"), nTrim(gehStufe)))
+                || (krankenkasse != null && !Objects.equals(vorher.getString("krankenkasse"), nTrim(krankenkasse)));
+        return UpdateResult.acknowledged(1, geaendert ? 1L : 0L, null);
     }
 
 
@@ -164,7 +574,16 @@ public class FirmaCrud {
      * @return DeleteResult mit Informationen zum Löschsvorgang
      */
     public DeleteResult deletePersonalByPnr(int pnr) {
-        return personal.deleteOne(eq("pnr", pnr));
+        Document weg = personal.findOneAndDelete(eq("pnr", pnr),
+                new FindOneAndDeleteOptions().projection(Projections.include("abt_nr")));
+        if (weg == null) {
+            return DeleteResult.acknowledged(0);
+        }
+
+        Map<String, Integer> delta = new HashMap<>();
+        delta.put(weg.getString("abt_nr"), -1);
+        applyAbteilungDelta(delta);
+        return DeleteResult.acknowledged(1);
     }
 
     
@@ -176,11 +595,59 @@ public class FirmaCrud {
      * @return DeleteResult mit Informationen zum Löschvorgang
      */
     public DeleteResult deletePersonalByName(String vorname, String name) {
-        return personal.deleteMany(and(eq("name", nTrim(name)), eq("vorname", nTrim(vorname))));
+        Bson filter = and(eq("name", nTrim(name)), eq("vorname", nTrim(vorname)));
+
+        Map<String, Integer> delta = new HashMap<>();
+        for (var d : personal.find(filter).projection(Projections.include("abt_nr"))) {
+            delta.merge(d.getString("abt_nr"), -1, Integer::sum);
+        }
+        if (delta.isEmpty()) {
+            return DeleteResult.acknowledged(0);
+        }
+
+        DeleteResult res = personal.deleteMany(filter);
+        int erwartet = -delta.values().stream().mapToInt(Integer::intValue).sum();
+        if (res.getDeletedCount() == erwartet) {
+            applyAbteilungDelta(delta);
+        } else {
+            // zwischen find und deleteMany geändert: neu zählen
+            rebuildAbteilungStats();
+        }
+        return res;
     }
 
     
 
+    /**
+     * Löscht viele Mitarbeiter mit einem einzigen deleteMany (z. B. nach
+     * {@link fhwedel.JDBC.Offboarding}) und pflegt die Zählungen je Abteilung.
+     * @param pnrs Personalnummern
+     * @return DeleteResult mit Informationen zum Löschvorgang
+     */
+    public DeleteResult deletePersonalBulk(Collection<Integer> pnrs) {
+        if (pnrs.isEmpty()) {
+            return DeleteResult.acknowledged(0);
+        }
+        Bson filter = in("pnr", pnrs);
+
+        Map<String, Integer> delta = new HashMap<>();
+        for (var d : personal.find(filter).projection(Projections.include("abt_nr"))) {
+            delta.merge(d.getString("abt_nr"), -1, Integer::sum);
+        }
+        if (delta.isEmpty()) {
+            return DeleteResult.acknowledged(0);
+        }
+
+        DeleteResult res = personal.deleteMany(filter);
+        int erwartet = -delta.values().stream().mapToInt(Integer::intValue).sum();
+        if (res.getDeletedCount() == erwartet) {
+            applyAbteilungDelta(delta);
+        } else {
+            rebuildAbteilungStats();
+        }
+        return res;
+    }
+
     /**
      * Gibt eine Liste aller Mitarbeiter in der angegebenen Abteilung zurück
      * @param abtNr Abteilungsnummer
@@ -193,29 +660,127 @@ public class FirmaCrud {
     }
 
 
+    /**
+     * Wie {@link #listPersonalInAbteilung(String)}, aber als lazy Stream mit Projektion.
+     * Der Stream muss geschlossen werden.
+     * @param abtNr Abteilungsnummer
+     * @param projection Projektion (z. B. {@link #STAMMDATEN}) oder null für ganze Dokumente
+     * @return Stream der passenden Dokumente
+     */
+    public Stream<Document> streamPersonalInAbteilung(String abtNr, Bson projection) {
+        return streamPersonal(eq("abt_nr", nTrim(abtNr)), projection, DEFAULT_BATCH_SIZE);
+    }
+
+
    
     /**
      * Zählt, wie viele Mitarbeiter pro Abteilung vorhanden sind und sortiert das Ergebnis absteigend
-     * nacht der Mitarbeiteranzahl
+     * nacht der Mitarbeiteranzahl. Gelesen wird die gepflegte Collection {@value #ABTEILUNG_STATS}
+     * (ein Dokument je Abteilung) statt einer Aggregation über personal; ist sie leer, wird sie
+     * einmalig aufgebaut.
      * @return Liste von Document-Objekten, die pro Abteilung die Abeilungsnummer und die Anzahl der
      * Mitarbeiter anzahl enthalten.
      */
     public List<Document> countPersonalByAbteilung() {
-        return personal.aggregate(List.of(
+        var res = abteilungStats.find().sort(Sorts.descending("anzahl")).into(new ArrayList<>());
+        if (res.isEmpty() && personal.estimatedDocumentCount() > 0) {
+            rebuildAbteilungStats();
+            res = abteilungStats.find().sort(Sorts.descending("anzahl")).into(new ArrayList<>());
+        }
+        return res;
+    }
+
+    /**
+     * Baut {@value #ABTEILUNG_STATS} per $group/$out neu aus personal auf (Reparatur nach Drift,
+     * z. B. nach einem Import oder Schreibzugriffen an FirmaCrud vorbei). $out ersetzt die
+     * Collection atomar; Leser sehen immer einen vollständigen Stand.
+     */
+    public void rebuildAbteilungStats() {
+        personal.aggregate(List.of(
                 new Document("$group", new Document("_id", "$abt_nr").append("anzahl", new Document("$sum", 1))),
-                new Document("$sort", new Document("anzahl", -1))
-        )).into(new ArrayList<>());
+                new Document("$out", ABTEILUNG_STATS)
+        )).toCollection();
+    }
+
+    /**
+     * Hilfsfunktion
+     * Trägt einen Abteilungswechsel in die Deltas ein (nichts, wenn alt und neu gleich sind).
+     */
+    static void wechsel(Map<String, Integer> delta, String alt, String neu) {
+        if (!Objects.equals(alt, neu)) {
+            delta.merge(alt, -1, Integer::sum);
+            delta.merge(neu, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Hilfsfunktion
+     * Überträgt Zähländerungen je abt_nr mit einem Bulk-Write nach {@value #ABTEILUNG_STATS};
+     * Abteilungen ohne Mitarbeiter werden entfernt.
+     */
+    private void applyAbteilungDelta(Map<String, Integer> delta) {
+        var models = deltaModels(delta);
+        if (models.isEmpty()) {
+            return;
+        }
+        abteilungStats.bulkWrite(models, new BulkWriteOptions().ordered(false));
+        if (delta.values().stream().anyMatch(v -> v < 0)) {
+            abteilungStats.deleteMany(lte("anzahl", 0));
+        }
+    }
+
+    /**
+     * Hilfsfunktion
+     * $inc-Upserts je abt_nr für {@value #ABTEILUNG_STATS}.
+     */
+    static List<WriteModel<Document>> deltaModels(Map<String, Integer> delta) {
+        var models = new ArrayList<WriteModel<Document>>();
+        for (var e : delta.entrySet()) {
+            if (e.getValue() != 0) {
+                models.add(new UpdateOneModel<>(eq("_id", e.getKey()), inc("anzahl", e.getValue()), UPSERT));
+            }
+        }
+        return models;
     }
 
 
 
+    /**
+     * Eine Seite aus {@link #readPersonalPage}.
+     */
+    public static final class PersonalPage {
+        private final List<Document> items;
+        private final Integer nextAfter;
+
+        PersonalPage(List<Document> items, Integer nextAfter) {
+            this.items     = items;
+            this.nextAfter = nextAfter;
+        }
+
+        /** @return Dokumente dieser Seite */
+        public List<Document> items() {
+            return items;
+        }
+
+        /** @return pnr für die Folgeseite oder null, wenn dies die letzte Seite ist */
+        public Integer nextAfter() {
+            return nextAfter;
+        }
+
+        /** @return true, wenn es eine Folgeseite geben kann */
+        public boolean hasNext() {
+            return nextAfter != null;
+        }
+    }
+
+
     /**
      * Hilfsfunktion
      * Entfernt führende und nachfolgende Leerzeichen aus einem String
      * @param s der zu bearbeitende String
      * @return der getrimmte String
      */
-    private static String nTrim(String s) { return s == null ? null : s.trim(); }
+    static String nTrim(String s) { return s == null ? null : s.trim(); }
 
 
     //Testausgabe
@@ -226,26 +791,43 @@ public class FirmaCrud {
     System.out.println("[INFO] Starte CRUD auf MongoDB");
     System.out.println("[INFO] MongoDB: " + mongoUri + " / DB=" + mongoDb);
 
-    try (MongoClient mClient = MongoClients.create(mongoUri)) {
+    MongoMetrics metrics = new MongoMetrics();
+    try (MongoClient mClient = MongoClients.create(metrics.settings(mongoUri))) {
         MongoDatabase db = mClient.getDatabase(mongoDb);
 
         var crud = new FirmaCrud(db);
 
+        if (args.length > 0 && args[0].equals("rebuild-stats")) {
+            crud.rebuildAbteilungStats();
+            System.out.println("[OK] " + ABTEILUNG_STATS + " neu aufgebaut: " + crud.countPersonalByAbteilung());
+            return;
+        }
+
         // Create
         System.out.println("\n=== (a) CREATE: Henrik Krause ===");
         crud.createPersonal(417, "Krause", "Henrik", "d13", "it1", "tkk");
         System.out.println("[CHECK] " + crud.readPersonalByPnr(417));
 
+        var neu = crud.createPersonalBulk(List.of(
+                new Document("pnr", 418).append("name", "Krause").append("vorname", "Ida")
+                        .append("abt_nr", "d13").append("geh_stufe", "it1").append("krankenkasse", "tkk"),
+                new Document("pnr", 417).append("name", "Krause").append("vorname", "Henrik")
+                        .append("abt_nr", "d13").append("geh_stufe", "it2").append("krankenkasse", "tkk")));
+        System.out.printf("[BULK] neu=%d geändert=%d%n", neu.getUpserts().size(), neu.getModifiedCount());
+
         // Read
         System.out.println("\n=== (b) READ: Alle Personal ===");
-        var alle = crud.readPersonal(null);
-        System.out.println("[READ] Anzahl: " + alle.size());
+        long alle = crud.streamPersonalPaged(null, STAMMDATEN, DEFAULT_BATCH_SIZE).count();
+        System.out.println("[READ] Anzahl: " + alle);
 
         // Update
         System.out.println("\n=== (c) UPDATE: Gehalt it1 +10% ===");
         int[] altNeu = crud.updateGehaltPercent("it1", 10.0);
         System.out.printf("[RESULT] it1: %d -> %d%n", altNeu[0], altNeu[1]);
 
+        var runde = crud.updateGehaltPercentBulk(Map.of("it2", 3.0, "it3", 2.5));
+        runde.forEach((stufe, an) -> System.out.printf("[RESULT] %s: %d -> %d%n", stufe, an[0], an[1]));
+
         // Delete
         System.out.println("\n=== (d) DELETE: Lutz Tietze ===");
         var del = crud.deletePersonalByPnr(135);
@@ -253,12 +835,18 @@ public class FirmaCrud {
 
         // Query
         System.out.println("\n=== (e) QUERY: Abteilung Verkauf (d15) ===");
-        var verkauf = crud.listPersonalInAbteilung("d15");
-        System.out.println("[RESULT] Anzahl in Verkauf: " + verkauf.size());
-        for (var d : verkauf) {
-            System.out.printf("  pnr=%s  %s %s%n", d.get("pnr"), d.getString("vorname"), d.getString("name"));
+        try (var verkauf = crud.streamPersonalInAbteilung(crud.abtNrByName("Verkauf"), STAMMDATEN)) {
+            verkauf.forEach(d ->
+                    System.out.printf("  pnr=%s  %s %s%n", d.get("pnr"), d.getString("vorname"), d.getString("name")));
+        }
+
+        System.out.println("\n=== (f) Mitarbeiter je Abteilung ===");
+        for (var d : crud.countPersonalByAbteilung()) {
+            System.out.printf("  %s: %s%n", d.get("_id"), d.get("anzahl"));
         }
 
+        System.out.println("[CACHE] " + crud.cacheStats());
+        System.out.print(metrics.summary());
         System.out.println("\n[DONE] CRUD-Teil abgeschlossen.");
     }
 }
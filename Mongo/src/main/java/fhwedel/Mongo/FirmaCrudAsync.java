@@ -0,0 +1,256 @@
+package fhwedel.Mongo;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Updates.*;
+import static fhwedel.Mongo.CRUDclient.getenvOr;
+import static fhwedel.Mongo.FirmaCrud.nTrim;
+
+/**
+ * Nicht blockierendes Gegenstück zu {@link FirmaCrud} auf dem Reactive-Streams-Treiber.
+ * Einzelergebnisse kommen als {@link CompletionStage}, Ergebnismengen als {@link Publisher}:
+ * der Aufrufer bestimmt per {@code request(n)}, wie viele Dokumente geliefert werden
+ * (Backpressure), und es wartet kein Thread auf das Netzwerk.
+ * Semantik und gepflegte Kennzahlen ({@value FirmaCrud#ABTEILUNG_STATS}) wie bei {@link FirmaCrud}.
+ */
+public class FirmaCrudAsync {
+
+    private final MongoCollection<Document> personal;
+    private final MongoCollection<Document> gehalt;
+    private final MongoCollection<Document> abteilungStats;
+
+    /**
+     * @param db Datenbank des Reactive-Streams-Treibers
+     */
+    public FirmaCrudAsync(MongoDatabase db) {
+        this.personal       = db.getCollection("personal");
+        this.gehalt         = db.getCollection("gehalt");
+        this.abteilungStats = db.getCollection(FirmaCrud.ABTEILUNG_STATS);
+    }
+
+    /**
+     * Legt einen Mitarbeiter per Upsert an bzw. aktualisiert ihn, siehe
+     * {@link FirmaCrud#createPersonal(int, String, String, String, String, String)}.
+     * @return true, wenn der Mitarbeiter neu angelegt wurde
+     */
+    public CompletionStage<Boolean> createPersonal(int pnr, String name, String vorname,
+                                                   String abtNr, String gehStufe, String krankenkasse) {
+        var doc = new Document("pnr", pnr)
+                .append("name", name)
+                .append("vorname", vorname)
+                .append("abt_nr", abtNr)
+                .append("geh_stufe", gehStufe)
+                .append("krankenkasse", krankenkasse);
+
+        return Publishers.first(personal.findOneAndUpdate(eq("pnr", pnr), FirmaCrud.personalUpsert(doc),
+                        new FindOneAndUpdateOptions()
+                                .upsert(true)
+                                .projection(Projections.include("abt_nr"))
+                                .returnDocument(ReturnDocument.BEFORE)))
+                .thenCompose(vorher -> {
+                    Map<String, Integer> delta = new HashMap<>();
+                    if (vorher != null) {
+                        FirmaCrud.wechsel(delta, vorher.getString("abt_nr"), nTrim(abtNr));
+                    } else {
+                        delta.put(nTrim(abtNr), 1);
+                    }
+                    return applyAbteilungDelta(delta).thenApply(v -> vorher == null);
+                });
+    }
+
+    /**
+     * Liest Mitarbeiter-Dokumente gestreamt.
+     * @param filter MongoDB-Filter oder null für alle
+     * @param projection Projektion (z. B. {@link FirmaCrud#STAMMDATEN}) oder null
+     * @param batchSize Dokumente pro getMore
+     * @return Publisher der gefundenen Dokumente
+     */
+    public Publisher<Document> readPersonal(Bson filter, Bson projection, int batchSize) {
+        var find = personal.find(filter == null ? new Document() : filter).batchSize(batchSize);
+        return projection == null ? find : find.projection(projection);
+    }
+
+    /**
+     * @param pnr Personalnummer
+     * @return Dokument oder null
+     */
+    public CompletionStage<Document> readPersonalByPnr(int pnr) {
+        return Publishers.first(personal.find(eq("pnr", pnr)).first());
+    }
+
+    /**
+     * Erhöht eine Gehaltsstufe serverseitig, siehe {@link FirmaCrud#updateGehaltPercent}.
+     * @return {alter Betrag, neuer Betrag}; schlägt mit NotFoundException fehl,
+     *         wenn die Stufe nicht existiert
+     */
+    public CompletionStage<int[]> updateGehaltPercent(String stufe, double percentPlus) {
+        Objects.requireNonNull(stufe, "stufe");
+        double factor = 1.0 + percentPlus / 100.0;
+
+        return Publishers.first(gehalt.findOneAndUpdate(eq("geh_stufe", stufe), FirmaCrud.raisePipeline(factor),
+                        new FindOneAndUpdateOptions()
+                                .projection(Projections.include("betrag"))
+                                .returnDocument(ReturnDocument.BEFORE)))
+                .thenApply(doc -> {
+                    if (doc == null) {
+                        throw new NotFoundException("Gehaltsstufe nicht gefunden: " + stufe);
+                    }
+                    int alt = ((Number) doc.get("betrag")).intValue();
+                    return new int[]{alt, FirmaCrud.rounded(alt, factor)};
+                });
+    }
+
+    /**
+     * Aktualisiert die Angaben eines Mitarbeiters, siehe {@link FirmaCrud#updatePersonal}.
+     * @throws IllegalArgumentException falls keine der übergebenen Felder gesetzt ist
+     */
+    public CompletionStage<UpdateResult> updatePersonal(int pnr, String abtNr, String gehStufe, String krankenkasse) {
+        var updates = new ArrayList<Bson>();
+        if (abtNr != null)        updates.add(set("abt_nr", nTrim(abtNr)));
+        if (gehStufe != null)     updates.add(set("geh_stufe", nTrim(gehStufe)));
+        if (krankenkasse != null) updates.add(set("krankenkasse", nTrim(krankenkasse)));
+        if (updates.isEmpty()) {
+            throw new IllegalArgumentException("Keine zu ändernden Felder gesetzt.");
+        }
+        updates.add(unset(DeltaSync.HASH_FIELD));
+
+        if (abtNr == null) {
+            return Publishers.first(personal.updateOne(eq("pnr", pnr), combine(updates)));
+        }
+
+        return Publishers.first(personal.findOneAndUpdate(eq("pnr", pnr), combine(updates),
+                        new FindOneAndUpdateOptions()
+                                .projection(Projections.include("abt_nr", "geh_stufe", "krankenkasse"))
+                                .returnDocument(ReturnDocument.BEFORE)))
+                .thenCompose(vorher -> {
+                    if (vorher == null) {
+                        return CompletableFuture.completedFuture(UpdateResult.acknowledged(0, 0L, null));
+                    }
+                    Map<String, Integer> delta = new HashMap<>();
+                    FirmaCrud.wechsel(delta, vorher.getString("abt_nr"), nTrim(abtNr));
+
+                    boolean geaendert = !Objects.equals(vorher.getString("abt_nr"), nTrim(abtNr))
+                            || (gehStufe != null && !Objects.equals(vorher.getString("geh_stufe"), nTrim(gehStufe)))
+                            || (krankenkasse != null
+                                && !Objects.equals(vorher.getString("krankenkasse"), nTrim(krankenkasse)));
+                    return applyAbteilungDelta(delta)
+                            .thenApply(v -> UpdateResult.acknowledged(1, geaendert ? 1L : 0L, null));
+                });
+    }
+
+    /**
+     * Löscht einen Mitarbeiter anhand der Personalnummer.
+     * @param pnr Personalnummer
+     * @return DeleteResult
+     */
+    public CompletionStage<DeleteResult> deletePersonalByPnr(int pnr) {
+        return Publishers.first(personal.findOneAndDelete(eq("pnr", pnr),
+                        new FindOneAndDeleteOptions().projection(Projections.include("abt_nr"))))
+                .thenCompose(weg -> {
+                    if (weg == null) {
+                        return CompletableFuture.completedFuture(DeleteResult.acknowledged(0));
+                    }
+                    Map<String, Integer> delta = new HashMap<>();
+                    delta.put(weg.getString("abt_nr"), -1);
+                    return applyAbteilungDelta(delta).thenApply(v -> DeleteResult.acknowledged(1));
+                });
+    }
+
+    /**
+     * Löscht alle Mitarbeiter mit dem angegebenen Vor- und Nachnamen; die Kennzahlen
+     * werden danach per {@link #rebuildAbteilungStats()} neu aufgebaut.
+     * @return DeleteResult
+     */
+    public CompletionStage<DeleteResult> deletePersonalByName(String vorname, String name) {
+        return Publishers.first(personal.deleteMany(and(eq("name", nTrim(name)), eq("vorname", nTrim(vorname)))))
+                .thenCompose(res -> res.getDeletedCount() == 0
+                        ? CompletableFuture.completedFuture(res)
+                        : rebuildAbteilungStats().thenApply(v -> res));
+    }
+
+    /**
+     * @param abtNr Abteilungsnummer
+     * @param projection Projektion oder null
+     * @return Publisher der Mitarbeiter der Abteilung
+     */
+    public Publisher<Document> listPersonalInAbteilung(String abtNr, Bson projection) {
+        return readPersonal(eq("abt_nr", nTrim(abtNr)), projection, FirmaCrud.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @return Publisher der Kennzahlen je Abteilung, absteigend nach anzahl
+     */
+    public Publisher<Document> countPersonalByAbteilung() {
+        return abteilungStats.find().sort(Sorts.descending("anzahl"));
+    }
+
+    /**
+     * Baut die Kennzahlen je Abteilung neu auf, siehe {@link FirmaCrud#rebuildAbteilungStats()}.
+     * @return Abschluss
+     */
+    public CompletionStage<Void> rebuildAbteilungStats() {
+        return Publishers.first(personal.aggregate(List.of(
+                new Document("$group", new Document("_id", "$abt_nr").append("anzahl", new Document("$sum", 1))),
+                new Document("$out", FirmaCrud.ABTEILUNG_STATS)
+        )).toCollection());
+    }
+
+    private CompletionStage<Void> applyAbteilungDelta(Map<String, Integer> delta) {
+        var models = FirmaCrud.deltaModels(delta);
+        if (models.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletionStage<?> write = Publishers.first(
+                abteilungStats.bulkWrite(models, new BulkWriteOptions().ordered(false)));
+        if (delta.values().stream().anyMatch(v -> v < 0)) {
+            write = write.thenCompose(r -> Publishers.first(abteilungStats.deleteMany(lte("anzahl", 0))));
+        }
+        return write.thenApply(r -> null);
+    }
+
+    //Testausgabe
+    public static void main(String[] args) throws Exception {
+        String mongoUri = getenvOr("MONGO_URI", "mongodb://localhost:27017");
+        String mongoDb  = getenvOr("MONGO_DB", "firma");
+        int n = Integer.parseInt(getenvOr("ASYNC_REQUESTS", "10000"));
+
+        try (MongoClient client = MongoClients.create(mongoUri)) {
+            var crud = new FirmaCrudAsync(client.getDatabase(mongoDb));
+
+            long t0 = System.nanoTime();
+            var alle = new ArrayList<CompletableFuture<Document>>(n);
+            for (int i = 0; i < n; i++) {
+                alle.add(crud.readPersonalByPnr(417).toCompletableFuture());
+            }
+            CompletableFuture.allOf(alle.toArray(new CompletableFuture<?>[0])).join();
+            double ms = (System.nanoTime() - t0) / 1e6;
+            System.out.printf("[ASYNC] %d Abfragen gleichzeitig: %.0f ms (%.0f/s)%n", n, ms, n / ms * 1000);
+
+            var counts = Publishers.toList(crud.countPersonalByAbteilung()).join();
+            System.out.println("[ASYNC] Mitarbeiter je Abteilung: " + counts);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package fhwedel.Mongo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-Ereignis für eine Import-Phase von {@link CRUDclient} (abteilungen, gehalt, personal).
+ */
+@Name("fhwedel.ImportPhase")
+@Label("Import-Phase")
+@Category({"DBTI25", "Import"})
+@StackTrace(false)
+public final class ImportPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Collection")
+    public String collection;
+
+    @Label("Dokumente")
+    public long rows;
+
+    @Label("Bytes")
+    @Description("Nutzdaten der geschriebenen Dokumente, geschätzt ohne erneutes Kodieren")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,363 @@
+package fhwedel.Mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Dreistufige Import-Pipeline: ein JDBC-Leser, mehrere Dokument-Builder und
+ * mehrere MongoDB-Writer, verbunden über beschränkte Queues. Ist eine Queue
+ * voll, blockiert die vorgelagerte Stufe (Backpressure), der Speicherbedarf
+ * bleibt also unabhängig von der Tabellengröße.
+ * Der Leser läuft im aufrufenden Thread, Builder und Writer in eigenen Threads.
+ *
+ * @param <R> Typ der vom Leser gelieferten Rohzeilen
+ */
+final class ImportPipeline<R> {
+
+    /**
+     * Lesestufe: liest Zeilen aus der Quelle und übergibt sie an die Pipeline.
+     * @param <R> Typ der Rohzeilen
+     */
+    interface RowSource<R> {
+        void read(RowSink<R> sink) throws SQLException;
+    }
+
+    /**
+     * Eingang der Pipeline; blockiert, solange die Builder-Queue voll ist.
+     * @param <R> Typ der Rohzeilen
+     */
+    interface RowSink<R> {
+        void accept(R row);
+    }
+
+    /** Konfiguration der Pipeline (Threads, Queue-Tiefe, Batches). */
+    static final class Options {
+        final int builders;
+        final int writers;
+        final int queueSize;
+        final int batchSize;
+        final boolean ordered;
+
+        /**
+         * @param builders Anzahl Builder-Threads
+         * @param writers Anzahl Writer-Threads
+         * @param queueSize Kapazität jeder Queue zwischen zwei Stufen
+         * @param batchSize Operationen pro bulkWrite je Writer
+         * @param ordered geordnete oder ungeordnete bulkWrites
+         */
+        Options(int builders, int writers, int queueSize, int batchSize, boolean ordered) {
+            if (builders < 1 || writers < 1 || queueSize < 1) {
+                throw new IllegalArgumentException("builders, writers und queueSize müssen >= 1 sein");
+            }
+            this.builders  = builders;
+            this.writers   = writers;
+            this.queueSize = queueSize;
+            this.batchSize = batchSize;
+            this.ordered   = ordered;
+        }
+
+        @Override
+        public String toString() {
+            return "builders=" + builders + ", writers=" + writers + ", queue=" + queueSize
+                    + ", batch=" + batchSize + (ordered ? " (ordered)" : " (unordered)");
+        }
+    }
+
+    /** Ende-Markierung in den Queues. */
+    private static final Object END = new Object();
+
+    private static final long POLL_MS = 100;
+
+    private final String name;
+    private final MongoCollection<Document> target;
+    private final Options options;
+    private final boolean countBytes;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * @param name Name für die Ausgaben
+     * @param target Ziel-Collection
+     * @param options Konfiguration
+     */
+    ImportPipeline(String name, MongoCollection<Document> target, Options options) {
+        this(name, target, options, false);
+    }
+
+    /**
+     * @param name Name für die Ausgaben
+     * @param target Ziel-Collection
+     * @param options Konfiguration
+     * @param countBytes true summiert die Nutzdaten der Writer für {@link #bytesWritten()}
+     */
+    ImportPipeline(String name, MongoCollection<Document> target, Options options, boolean countBytes) {
+        this.name       = name;
+        this.target     = target;
+        this.options    = options;
+        this.countBytes = countBytes;
+    }
+
+    /** @return Nutzdaten der geschriebenen Dokumente (siehe {@link BatchWriter#payloadBytes}), 0 ohne {@code countBytes} */
+    long bytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Führt den Import aus und kehrt erst zurück, wenn alle Writer fertig sind.
+     *
+     * @param source Lesestufe
+     * @param builder bildet eine Rohzeile auf eine Schreiboperation ab; null überspringt die Zeile
+     * @return Anzahl geschriebener Operationen
+     * @throws SQLException Falls die Lesestufe einen SQL-Fehler meldet
+     */
+    long run(RowSource<R> source, Function<R, WriteModel<Document>> builder) throws SQLException {
+        return run(source, builder, null, null);
+    }
+
+    /**
+     * Führt den Import aus und meldet laufend, bis zu welchem Schlüssel alle
+     * gelesenen Zeilen geschrieben sind (für einen Wiederanlauf nach Abbruch).
+     *
+     * @param source Lesestufe; muss aufsteigend nach dem Schlüssel lesen
+     * @param builder bildet eine Rohzeile auf eine Schreiboperation ab; null überspringt die Zeile
+     * @param keyOf liefert den Schlüssel einer Rohzeile, oder null ohne Fortschrittsmeldung
+     * @param checkpoint erhält den jeweils erreichten Schlüssel, oder null
+     * @return Anzahl geschriebener Operationen
+     * @throws SQLException Falls die Lesestufe einen SQL-Fehler meldet
+     */
+    long run(RowSource<R> source, Function<R, WriteModel<Document>> builder,
+             Function<R, Object> keyOf, Consumer<Object> checkpoint) throws SQLException {
+        BlockingQueue<Object> rows  = new ArrayBlockingQueue<>(options.queueSize);
+        BlockingQueue<Object> built = new ArrayBlockingQueue<>(options.queueSize);
+
+        Watermark watermark = keyOf == null || checkpoint == null ? null : new Watermark(checkpoint);
+
+        AtomicInteger buildersLeft = new AtomicInteger(options.builders);
+        AtomicLong builtCount      = new AtomicLong();
+        AtomicLong writtenCount    = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(options.builders + options.writers, r -> {
+            Thread t = new Thread(r, "import-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+
+        long start = System.nanoTime();
+        AtomicLong buildersEnd = new AtomicLong(start);
+        AtomicLong writersEnd  = new AtomicLong(start);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < options.builders; i++) {
+            futures.add(pool.submit(() -> {
+                try {
+                    Object item;
+                    while ((item = take(rows)) != END) {
+                        Item in = (Item) item;
+                        @SuppressWarnings("unchecked")
+                        WriteModel<Document> model = builder.apply((R) in.payload);
+                        if (model != null) {
+                            put(built, new Item(in.seq, model));
+                            builtCount.incrementAndGet();
+                        } else if (watermark != null) {
+                            watermark.complete(List.of(in.seq));
+                        }
+                    }
+                } catch (Throwable t) {
+                    fail(t);
+                } finally {
+                    if (buildersLeft.decrementAndGet() == 0) {
+                        buildersEnd.set(System.nanoTime());
+                        for (int w = 0; w < options.writers; w++) {
+                            putQuietly(built, END);
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < options.writers; i++) {
+            futures.add(pool.submit(() -> {
+                BatchWriter writer = new BatchWriter(target, options.batchSize, options.ordered, countBytes);
+                List<Long> pending = new ArrayList<>();
+                try {
+                    Object item;
+                    while ((item = take(built)) != END) {
+                        Item in = (Item) item;
+                        @SuppressWarnings("unchecked")
+                        WriteModel<Document> model = (WriteModel<Document>) in.payload;
+                        pending.add(in.seq);
+                        if (writer.add(model)) {
+                            completed(watermark, pending);
+                        }
+                    }
+                    writer.close();
+                    completed(watermark, pending);
+                } catch (Throwable t) {
+                    fail(t);
+                } finally {
+                    writtenCount.addAndGet(writer.written());
+                    bytesWritten.addAndGet(writer.bytes());
+                    writersEnd.accumulateAndGet(System.nanoTime(), Math::max);
+                }
+            }));
+        }
+
+        long read = 0;
+        long readEnd;
+        try {
+            long[] seq = new long[1];
+            source.read(row -> {
+                long n = ++seq[0];
+                if (watermark != null) {
+                    watermark.register(n, keyOf.apply(row));
+                }
+                put(rows, new Item(n, row));
+            });
+            read = seq[0];
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            readEnd = System.nanoTime();
+            for (int b = 0; b < options.builders; b++) {
+                putQuietly(rows, END);
+            }
+        }
+
+        pool.shutdown();
+        try {
+            for (var f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            pool.shutdownNow();
+        } catch (ExecutionException e) {
+            fail(e.getCause());
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof Aborted) {
+            t = t.getCause();
+        }
+        if (t instanceof SQLException) {
+            throw (SQLException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new IllegalStateException("Import " + name + " abgebrochen", t);
+        }
+
+        report("Leser",   1,                read,               readEnd - start);
+        report("Builder", options.builders, builtCount.get(),   buildersEnd.get() - start);
+        report("Writer",  options.writers,  writtenCount.get(), writersEnd.get() - start);
+        return writtenCount.get();
+    }
+
+    /** Meldet die geschriebenen Zeilen eines Writers an die Fortschrittsmarke. */
+    private static void completed(Watermark watermark, List<Long> seqs) {
+        if (watermark != null && !seqs.isEmpty()) {
+            watermark.complete(seqs);
+        }
+        seqs.clear();
+    }
+
+    private void report(String stage, int threads, long n, long nanos) {
+        System.out.printf("[PIPE] %s %s(%d): %d in %.1f ms (%.0f/s)%n",
+                name, stage, threads, n, nanos / 1e6, nanos == 0 ? 0 : n * 1e9 / nanos);
+    }
+
+    /** Merkt sich den ersten Fehler; alle Stufen brechen danach ab. */
+    private void fail(Throwable t) {
+        failure.compareAndSet(null, t);
+    }
+
+    private Object take(BlockingQueue<Object> q) {
+        checkFailure();
+        try {
+            Object item;
+            while ((item = q.poll(POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+                checkFailure();
+            }
+            return item;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Aborted(e);
+        }
+    }
+
+    private void put(BlockingQueue<Object> q, Object item) {
+        checkFailure();
+        try {
+            while (!q.offer(item, POLL_MS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Aborted(e);
+        }
+    }
+
+    /** Wie put, aber ohne Abbruch: Ende-Markierungen müssen auch nach Fehlern ankommen. */
+    private void putQuietly(BlockingQueue<Object> q, Object item) {
+        try {
+            while (!q.offer(item, POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    q.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() {
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new Aborted(t);
+        }
+    }
+
+    /** Zeile bzw. Schreiboperation mit ihrer Lesenummer. */
+    private static final class Item {
+        final long seq;
+        final Object payload;
+
+        Item(long seq, Object payload) {
+            this.seq     = seq;
+            this.payload = payload;
+        }
+    }
+
+    /** Signalisiert den Abbruch einer Stufe, weil eine andere Stufe fehlgeschlagen ist. */
+    private static final class Aborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Aborted(Throwable cause) {
+            super(cause);
+        }
+    }
+}
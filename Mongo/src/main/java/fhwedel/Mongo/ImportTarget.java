@@ -0,0 +1,57 @@
+package fhwedel.Mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+/**
+ * Ziel eines Imports: legt fest, in welche Collection ein aus MariaDB gebautes
+ * Dokument mit welcher Schreiboperation geschrieben wird und ab welchem
+ * Schlüssel ein abgebrochener Import fortgesetzt werden kann.
+ */
+interface ImportTarget {
+
+    /** @return Collection, in die geschrieben wird */
+    MongoCollection<Document> collection();
+
+    /**
+     * Builder-Schritt: liefert die Schreiboperation für ein gebautes Dokument.
+     * @param doc aus der Quelle gebautes Dokument
+     * @return Schreiboperation, oder null, wenn nichts zu schreiben ist
+     */
+    WriteModel<Document> toWrite(Document doc);
+
+    /**
+     * @return Schlüssel, nach dem das Lesen fortgesetzt wird, oder null für einen vollständigen Lauf
+     */
+    default Object resumeAfter() {
+        return null;
+    }
+
+    /**
+     * Alle Zeilen bis einschließlich key sind geschrieben.
+     * @param key erreichter Schlüssel
+     */
+    default void reached(Object key) {
+    }
+
+    /**
+     * Vollimport: fügt jedes Dokument (mit Inhalts-Hash für spätere Abgleiche) ein.
+     * @param collection leere Ziel-Collection
+     * @return Importziel
+     */
+    static ImportTarget insertInto(MongoCollection<Document> collection) {
+        return new ImportTarget() {
+            @Override
+            public MongoCollection<Document> collection() {
+                return collection;
+            }
+
+            @Override
+            public WriteModel<Document> toWrite(Document doc) {
+                return new InsertOneModel<>(DeltaSync.withHash(doc));
+            }
+        };
+    }
+}
@@ -0,0 +1,309 @@
+package fhwedel.Mongo;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import fhwedel.JDBC.LatencyHistogram;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Instrumentierung des MongoDB-Treibers über {@link CommandListener} und
+ * {@link ConnectionPoolListener}:
+ * <ul>
+ *   <li>Latenz je Kommando und Collection (z. B. {@code find personal}) als {@link LatencyHistogram}</li>
+ *   <li>Fehler und Dokumente (gelesene Batches bzw. geschriebene n)</li>
+ *   <li>optional Bytes je Richtung ({@link #MongoMetrics(boolean)}): Kommandos liegen im Listener
+ *       nicht als Rohbytes vor und werden dafür erneut kodiert, bei großen insert-/update-Batches
+ *       kostet das etwa so viel wie das Kodieren durch den Treiber selbst; daher standardmäßig aus</li>
+ *   <li>Wartezeit beim Ausleihen einer Verbindung aus dem Treiber-Pool, ausgeliehene Verbindungen</li>
+ * </ul>
+ * Ausgabe als Prometheus-Text ({@link #prometheus()}) oder als periodische Log-Zusammenfassung
+ * ({@link #startLogging(long)}). Einbinden über {@link #settings(String)}.
+ */
+public final class MongoMetrics implements CommandListener, ConnectionPoolListener {
+
+    private static final BsonDocumentCodec CODEC = new BsonDocumentCodec();
+
+    private final Map<String, CommandStats> commands = new ConcurrentHashMap<>();
+    private final Map<Integer, Started> started = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong checkoutFailures = new AtomicLong();
+
+    private final boolean countBytes;
+
+    /**
+     * Instrumentierung ohne Byte-Zählung.
+     */
+    public MongoMetrics() {
+        this(false);
+    }
+
+    /**
+     * @param countBytes true zählt gesendete und empfangene Bytes (kodiert jedes Kommando erneut)
+     */
+    public MongoMetrics(boolean countBytes) {
+        this.countBytes = countBytes;
+    }
+
+    /**
+     * Client-Einstellungen mit dieser Instrumentierung.
+     * @param uri MongoDB-URI
+     * @return Einstellungen für {@code MongoClients.create(...)}
+     */
+    public MongoClientSettings settings(String uri) {
+        return MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .addCommandListener(this)
+                .applyToConnectionPoolSettings(b -> b.addConnectionPoolListener(this))
+                .build();
+    }
+
+    // --- CommandListener -----------------------------------------------------------------
+
+    @Override
+    public void commandStarted(CommandStartedEvent e) {
+        // das Kommando-Dokument ist nur während des Callbacks gültig
+        BsonDocument cmd = e.getCommand();
+        String coll = collectionOf(e.getCommandName(), cmd);
+        long docs = cmd.isArray("documents") ? cmd.getArray("documents").size() : 0;
+        started.put(e.getRequestId(), new Started(coll, countBytes ? sizeOf(cmd) : 0, docs));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent e) {
+        Started s = started.remove(e.getRequestId());
+        CommandStats st = stats(e.getCommandName(), s);
+        st.latency.record(e.getElapsedTime(TimeUnit.NANOSECONDS));
+
+        BsonDocument reply = e.getResponse();
+        if (countBytes) {
+            st.bytesIn.addAndGet(sizeOf(reply));
+        }
+        if (s != null) {
+            st.bytesOut.addAndGet(s.bytes);
+        }
+        st.documents.addAndGet(documentsOf(reply, s));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent e) {
+        Started s = started.remove(e.getRequestId());
+        CommandStats st = stats(e.getCommandName(), s);
+        st.latency.record(e.getElapsedTime(TimeUnit.NANOSECONDS));
+        st.failures.incrementAndGet();
+        if (s != null) {
+            st.bytesOut.addAndGet(s.bytes);
+        }
+    }
+
+    // --- ConnectionPoolListener ----------------------------------------------------------
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent e) {
+        poolWait.record(e.getElapsedTime(TimeUnit.NANOSECONDS));
+        checkedOut.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent e) {
+        poolWait.record(e.getElapsedTime(TimeUnit.NANOSECONDS));
+        checkoutFailures.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent e) {
+        checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent e) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent e) {
+        open.decrementAndGet();
+    }
+
+    // --- Ausgabe -------------------------------------------------------------------------
+
+    /**
+     * @return Momentaufnahme im Prometheus-Textformat
+     */
+    public String prometheus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE mongo_command_duration_seconds summary\n");
+        for (var e : sorted().entrySet()) {
+            CommandStats st = e.getValue();
+            String l = "command=\"" + st.command + "\",collection=\"" + st.collection + "\"";
+            for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                sb.append("mongo_command_duration_seconds{").append(l).append(",quantile=\"").append(q)
+                        .append("\"} ").append(st.latency.percentileMillis(q * 100) / 1000).append('\n');
+            }
+            sb.append("mongo_command_duration_seconds_sum{").append(l).append("} ")
+                    .append(st.latency.meanMillis() * st.latency.count() / 1000).append('\n');
+            sb.append("mongo_command_duration_seconds_count{").append(l).append("} ")
+                    .append(st.latency.count()).append('\n');
+        }
+        counter(sb, "mongo_command_failures_total", s -> s.failures.get());
+        counter(sb, "mongo_command_documents_total", s -> s.documents.get());
+        if (countBytes) {
+            sb.append("# TYPE mongo_command_bytes_total counter\n");
+            for (CommandStats st : sorted().values()) {
+                String l = "command=\"" + st.command + "\",collection=\"" + st.collection + "\"";
+                sb.append("mongo_command_bytes_total{").append(l).append(",direction=\"out\"} ")
+                        .append(st.bytesOut.get()).append('\n');
+                sb.append("mongo_command_bytes_total{").append(l).append(",direction=\"in\"} ")
+                        .append(st.bytesIn.get()).append('\n');
+            }
+        }
+
+        sb.append("# TYPE mongo_pool_wait_seconds summary\n");
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            sb.append("mongo_pool_wait_seconds{quantile=\"").append(q).append("\"} ")
+                    .append(poolWait.percentileMillis(q * 100) / 1000).append('\n');
+        }
+        sb.append("mongo_pool_wait_seconds_count ").append(poolWait.count()).append('\n');
+        sb.append("# TYPE mongo_pool_checked_out gauge\nmongo_pool_checked_out ").append(checkedOut.get()).append('\n');
+        sb.append("# TYPE mongo_pool_open gauge\nmongo_pool_open ").append(open.get()).append('\n');
+        sb.append("# TYPE mongo_pool_checkout_failures_total counter\nmongo_pool_checkout_failures_total ")
+                .append(checkoutFailures.get()).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * @return eine Zeile je Kommando/Collection, langsamste (p99) zuerst
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        commands.values().stream()
+                .sorted((a, b) -> Double.compare(b.latency.percentileMillis(99), a.latency.percentileMillis(99)))
+                .forEach(st -> sb.append(String.format("[MONGO] %-10s %-22s %s docs=%d%s fail=%d%n",
+                        st.command, st.collection, st.latency.summary(), st.documents.get(),
+                        countBytes ? " out=" + st.bytesOut.get() + "B in=" + st.bytesIn.get() + "B" : "",
+                        st.failures.get())));
+        sb.append(String.format("[MONGO] pool wait: %s checkedOut=%d open=%d fail=%d%n",
+                poolWait.summary(), checkedOut.get(), open.get(), checkoutFailures.get()));
+        return sb.toString();
+    }
+
+    /**
+     * Gibt {@link #summary()} periodisch auf System.out aus.
+     * @param intervalSeconds Intervall in Sekunden
+     * @return zum Beenden schließen
+     */
+    public AutoCloseable startLogging(long intervalSeconds) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mongo-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> System.out.print(summary()),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return timer::shutdownNow;
+    }
+
+    // --- Hilfsfunktionen -----------------------------------------------------------------
+
+    private CommandStats stats(String command, Started s) {
+        String coll = s == null ? "" : s.collection;
+        return commands.computeIfAbsent(command + " " + coll, k -> new CommandStats(command, coll));
+    }
+
+    private Map<String, CommandStats> sorted() {
+        return new TreeMap<>(commands);
+    }
+
+    private void counter(StringBuilder sb, String name, ToLongFunction<CommandStats> f) {
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        for (CommandStats st : sorted().values()) {
+            sb.append(name).append("{command=\"").append(st.command).append("\",collection=\"")
+                    .append(st.collection).append("\"} ").append(f.applyAsLong(st)).append('\n');
+        }
+    }
+
+    /** Collection steht bei den meisten Kommandos als Wert des Kommandonamens, bei getMore unter collection. */
+    private static String collectionOf(String command, BsonDocument cmd) {
+        BsonValue v = command.equals("getMore") ? cmd.get("collection") : cmd.get(command);
+        return v != null && v.isString() ? v.asString().getValue() : "";
+    }
+
+    /** Gelesene Dokumente (Cursor-Batch) bzw. geschriebene (n), sonst die gesendeten. */
+    private static long documentsOf(BsonDocument reply, Started s) {
+        BsonDocument cursor = reply.isDocument("cursor") ? reply.getDocument("cursor") : null;
+        if (cursor != null) {
+            if (cursor.isArray("firstBatch")) return cursor.getArray("firstBatch").size();
+            if (cursor.isArray("nextBatch"))  return cursor.getArray("nextBatch").size();
+        }
+        if (reply.isNumber("n")) {
+            return reply.getNumber("n").longValue();
+        }
+        return s == null ? 0 : s.documents;
+    }
+
+    private static long sizeOf(BsonDocument doc) {
+        if (doc instanceof RawBsonDocument) {
+            return ((RawBsonDocument) doc).getByteBuffer().remaining();
+        }
+        try (BasicOutputBuffer buf = new BasicOutputBuffer();
+             BsonBinaryWriter w = new BsonBinaryWriter(buf)) {
+            CODEC.encode(w, doc, EncoderContext.builder().build());
+            return buf.getPosition();
+        }
+    }
+
+    private static final class Started {
+        final String collection;
+        final long bytes;
+        final long documents;
+
+        Started(String collection, long bytes, long documents) {
+            this.collection = collection;
+            this.bytes      = bytes;
+            this.documents  = documents;
+        }
+    }
+
+    private static final class CommandStats {
+        final String command;
+        final String collection;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong failures  = new AtomicLong();
+        final AtomicLong documents = new AtomicLong();
+        final AtomicLong bytesOut  = new AtomicLong();
+        final AtomicLong bytesIn   = new AtomicLong();
+
+        CommandStats(String command, String collection) {
+            this.command    = command;
+            this.collection = collection;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package fhwedel.Mongo;
+
+/**
+ * Ein angefragter Datensatz (z. B. eine Gehaltsstufe) existiert nicht.
+ * Erweitert {@link IllegalStateException}, damit bestehende Aufrufer unverändert greifen;
+ * der {@link QueryServer} antwortet darauf mit 404.
+ */
+public class NotFoundException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message Beschreibung, was fehlt
+     */
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
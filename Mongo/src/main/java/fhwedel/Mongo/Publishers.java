@@ -0,0 +1,87 @@
+package fhwedel.Mongo;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Brücke von Reactive-Streams-{@link Publisher}n des Treibers zu {@link CompletableFuture}.
+ * Nur für Publisher mit höchstens einem bzw. wenigen Elementen gedacht; große
+ * Ergebnismengen als Publisher weiterreichen, damit Backpressure erhalten bleibt.
+ */
+final class Publishers {
+
+    private Publishers() {
+    }
+
+    /**
+     * @param p Publisher mit höchstens einem Element
+     * @return Future mit dem ersten Element oder null, wenn der Publisher leer endet
+     */
+    static <T> CompletableFuture<T> first(Publisher<T> p) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        p.subscribe(new Subscriber<T>() {
+            private Subscription s;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                this.s = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(T t) {
+                if (f.complete(t)) {
+                    s.cancel();
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                f.completeExceptionally(e);
+            }
+
+            @Override
+            public void onComplete() {
+                f.complete(null);
+            }
+        });
+        return f;
+    }
+
+    /**
+     * @param p endlicher Publisher
+     * @return Future mit allen Elementen
+     */
+    static <T> CompletableFuture<List<T>> toList(Publisher<T> p) {
+        CompletableFuture<List<T>> f = new CompletableFuture<>();
+        p.subscribe(new Subscriber<T>() {
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T t) {
+                items.add(t);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                f.completeExceptionally(e);
+            }
+
+            @Override
+            public void onComplete() {
+                f.complete(items);
+            }
+        });
+        return f;
+    }
+}
@@ -0,0 +1,343 @@
+package fhwedel.Mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fhwedel.JDBC.ConnectionPool;
+import fhwedel.JDBC.Hello;
+import fhwedel.JDBC.LatencyHistogram;
+import fhwedel.JDBC.Offboarding;
+import fhwedel.JDBC.PersonalRecord;
+import fhwedel.JDBC.SalaryAdjustment;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import static com.mongodb.client.model.Filters.eq;
+import static fhwedel.Mongo.CRUDclient.getenvOr;
+
+/**
+ * HTTP-Schnittstelle (JDK-HttpServer) vor {@link FirmaCrud} und {@link Hello}.
+ * <pre>
+ *   GET  /personal/{pnr}                      Mitarbeiter (Mongo)
+ *   GET  /personal?abt=d15&amp;after=&amp;limit=  Stammdaten seitenweise (Keyset auf pnr)
+ *   GET  /gehalt/{stufe}                      Betrag einer Gehaltsstufe (gecacht)
+ *   DELETE /personal                          Mitarbeiter samt Kindzeilen löschen, Body {"pnr": [..]}
+ *                                             oder {"namen": [..]}, optional "mongo": true
+ *   POST /gehalt/{stufe}?prozent=x            Gehaltsstufe erhöhen
+ *   POST /gehalt                              Gehaltsrunde, Body {"regeln": [{"geh_stufe", "prozent",
+ *                                             "min", "max"}], "mongo": true}, siehe {@link SalaryAdjustment}
+ *   GET  /abteilungen/anzahl                  Mitarbeiter je Abteilung
+ *   GET  /abteilung/{name}                    Mitarbeiter einer Abteilung (MariaDB)
+ *   GET  /verkauf                             Mitarbeiter im Verkauf (MariaDB)
+ *   GET  /metrics                             Latenz-Perzentile je Route, Pool, Bündelung
+ *   GET  /metrics/prometheus                  Mongo-Kommandos und -Pool im Prometheus-Format
+ * </pre>
+ * Jede Anfrage läuft in einem eigenen virtuellen Thread (Java 21+; auf älteren
+ * Laufzeiten ein Cached-Thread-Pool). Gleichzeitige identische Lesezugriffe auf
+ * /personal/{pnr} werden per {@link SingleFlight} zu einem Backend-Aufruf gebündelt.
+ */
+public class QueryServer {
+
+    private final FirmaCrud crud;
+    private final ConnectionPool pool;
+    private final MongoMetrics mongoMetrics;
+    private final SingleFlight<Integer, Document> personalFlight = new SingleFlight<>();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * @param crud Mongo-Zugriff
+     * @param pool MariaDB-Verbindungen für die Hello-Abfragen
+     * @param mongoMetrics Instrumentierung des Mongo-Clients oder null
+     */
+    public QueryServer(FirmaCrud crud, ConnectionPool pool, MongoMetrics mongoMetrics) {
+        this.crud = crud;
+        this.pool = pool;
+        this.mongoMetrics = mongoMetrics;
+    }
+
+    /**
+     * Startet den Server.
+     * @param port TCP-Port
+     * @return laufender Server (stoppen mit {@code stop(0)})
+     * @throws IOException wenn der Port nicht gebunden werden kann
+     */
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(requestExecutor());
+        server.start();
+        return server;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        long t0 = System.nanoTime();
+        String route = "unbekannt";
+        String contentType = "application/json; charset=utf-8";
+        int status;
+        String body;
+
+        try {
+            String method = ex.getRequestMethod();
+            String[] path = ex.getRequestURI().getPath().split("/");
+            Map<String, String> q = query(ex.getRequestURI().getRawQuery());
+            String first = path.length > 1 ? path[1] : "";
+
+            if (method.equals("GET") && first.equals("personal") && path.length == 3) {
+                route = "GET /personal/{pnr}";
+                int pnr = Integer.parseInt(path[2]);
+                Document d = personalFlight.get(pnr, () -> crud.readPersonalByPnr(pnr));
+                status = d == null ? 404 : 200;
+                body = d == null ? error("pnr " + pnr + " nicht gefunden") : d.toJson();
+
+            } else if (method.equals("GET") && first.equals("personal") && path.length == 2) {
+                route = "GET /personal";
+                Integer after = q.containsKey("after") ? Integer.valueOf(q.get("after")) : null;
+                int limit = Integer.parseInt(q.getOrDefault("limit", "100"));
+                var page = crud.readPersonalPage(q.containsKey("abt") ? eq("abt_nr", q.get("abt")) : null,
+                        FirmaCrud.STAMMDATEN, after, Math.min(limit, 1000));
+                status = 200;
+                body = new Document("items", page.items()).append("next", page.nextAfter()).toJson();
+
+            } else if (method.equals("DELETE") && first.equals("personal") && path.length == 2) {
+                route = "DELETE /personal";
+                Document req = body(ex);
+                Consumer<List<Integer>> mongo = req.getBoolean("mongo", false) ? crud::deletePersonalBulk : null;
+                Map<String, Long> weg;
+                try (Connection con = pool.getConnection()) {
+                    weg = req.containsKey("namen")
+                            ? Offboarding.deleteByName(con, list(req, "namen", String.class), 500, mongo)
+                            : Offboarding.deleteByPnr(con, list(req, "pnr", Integer.class), 500, mongo);
+                }
+                status = 200;
+                body = new Document("geloescht", new Document(new LinkedHashMap<>(weg))).toJson();
+
+            } else if (method.equals("POST") && first.equals("gehalt") && path.length == 2) {
+                route = "POST /gehalt";
+                Document req = body(ex);
+                List<SalaryAdjustment.Rule> rules = new ArrayList<>();
+                for (Document r : list(req, "regeln", Document.class)) {
+                    if (!(r.get("prozent") instanceof Number)) {
+                        throw new IllegalArgumentException("prozent fehlt für " + r.get("geh_stufe"));
+                    }
+                    rules.add(new SalaryAdjustment.Rule(r.getString("geh_stufe"),
+                            ((Number) r.get("prozent")).doubleValue(), r.getInteger("min"), r.getInteger("max")));
+                }
+                Map<String, int[]> an;
+                try (Connection con = pool.getConnection()) {
+                    an = SalaryAdjustment.apply(con, rules,
+                            req.getBoolean("mongo", false) ? crud::pushGehalt : null);
+                }
+                Document res = new Document();
+                an.forEach((stufe, altNeu) -> res.append(stufe, new Document("alt", altNeu[0]).append("neu", altNeu[1])));
+                status = 200;
+                body = res.toJson();
+
+            } else if (method.equals("POST") && first.equals("gehalt") && path.length == 3) {
+                route = "POST /gehalt/{stufe}";
+                String stufe = path[2];
+                int[] an = crud.updateGehaltPercent(stufe, Double.parseDouble(required(q, "prozent")));
+                status = 200;
+                body = new Document("geh_stufe", stufe).append("alt", an[0]).append("neu", an[1]).toJson();
+
+            } else if (method.equals("GET") && first.equals("gehalt") && path.length == 3) {
+                route = "GET /gehalt/{stufe}";
+                String stufe = path[2];
+                Integer betrag = crud.gehaltBetrag(stufe);
+                status = betrag == null ? 404 : 200;
+                body = betrag == null ? error("Gehaltsstufe " + stufe + " nicht gefunden")
+                        : new Document("geh_stufe", stufe).append("betrag", betrag).toJson();
+
+            } else if (method.equals("GET") && ex.getRequestURI().getPath().equals("/abteilungen/anzahl")) {
+                route = "GET /abteilungen/anzahl";
+                status = 200;
+                body = new Document("abteilungen", crud.countPersonalByAbteilung()).toJson();
+
+            } else if (method.equals("GET") && first.equals("abteilung") && path.length == 3) {
+                route = "GET /abteilung/{name}";
+                List<Document> rows = new ArrayList<>();
+                try (Connection con = pool.getConnection()) {
+                    for (PersonalRecord p : Hello.employeesInAbteilung(con, path[2])) {
+                        rows.add(new Document("pnr", p.getPnr()).append("name", p.getName())
+                                .append("vorname", p.getVorname()).append("geh_stufe", p.getGehStufe())
+                                .append("abt_nr", p.getAbtNr()));
+                    }
+                }
+                status = 200;
+                body = new Document("mitarbeiter", rows).toJson();
+
+            } else if (method.equals("GET") && first.equals("verkauf")) {
+                route = "GET /verkauf";
+                try (Connection con = pool.getConnection()) {
+                    status = 200;
+                    body = new Document("mitarbeiter", Hello.employeesInVerkauf(con)).toJson();
+                }
+
+            } else if (method.equals("GET") && ex.getRequestURI().getPath().equals("/metrics/prometheus")
+                    && mongoMetrics != null) {
+                route = "GET /metrics/prometheus";
+                contentType = "text/plain; charset=utf-8";
+                status = 200;
+                body = mongoMetrics.prometheus();
+
+            } else if (method.equals("GET") && first.equals("metrics")) {
+                route = "GET /metrics";
+                contentType = "text/plain; charset=utf-8";
+                status = 200;
+                body = metrics();
+
+            } else {
+                status = 404;
+                body = error("unbekannte Route");
+            }
+        } catch (NumberFormatException e) {
+            status = 400;
+            body = error("ungültige Parameter: " + e.getMessage());
+        } catch (NotFoundException e) {
+            status = 404;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (Exception e) {
+            status = 500;
+            body = error(e.toString());
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+        latencies.computeIfAbsent(route, r -> new LatencyHistogram()).record(System.nanoTime() - t0);
+    }
+
+    /**
+     * @return Latenzen je Route, Bündelung und Pool als Text
+     */
+    String metrics() {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(latencies).forEach((route, h) ->
+                sb.append(route).append(": ").append(h.summary()).append('\n'));
+        sb.append("singleflight personal: calls=").append(personalFlight.calls())
+                .append(" coalesced=").append(personalFlight.coalesced()).append('\n');
+        sb.append("cache: ").append(crud.cacheStats()).append('\n');
+        sb.append("pool: ").append(pool.metrics()).append('\n');
+        if (mongoMetrics != null) {
+            sb.append(mongoMetrics.summary());
+        }
+        return sb.toString();
+    }
+
+    private static String error(String msg) {
+        return new Document("fehler", msg).toJson();
+    }
+
+    /** Request-Body als JSON-Dokument; kein gültiges JSON ergibt 400. */
+    private static Document body(HttpExchange ex) throws IOException {
+        try {
+            return Document.parse(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("ungültiger JSON-Body: " + e.getMessage(), e);
+        }
+    }
+
+    /** Pflichtfeld im Body als Liste von {@code type}. */
+    private static <T> List<T> list(Document d, String key, Class<T> type) {
+        try {
+            List<T> l = d.getList(key, type);
+            if (l == null) {
+                throw new IllegalArgumentException(key + " fehlt");
+            }
+            return l;
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(key + " muss eine Liste von " + type.getSimpleName() + " sein", e);
+        }
+    }
+
+    /** Pflichtparameter in der Query. */
+    private static String required(Map<String, String> q, String key) {
+        String v = q.get(key);
+        if (v == null) {
+            throw new IllegalArgumentException("Parameter " + key + " fehlt");
+        }
+        return v;
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> q = new LinkedHashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return q;
+        }
+        for (String kv : raw.split("&")) {
+            int i = kv.indexOf('=');
+            String k = URLDecoder.decode(i < 0 ? kv : kv.substring(0, i), StandardCharsets.UTF_8);
+            String v = i < 0 ? "" : URLDecoder.decode(kv.substring(i + 1), StandardCharsets.UTF_8);
+            q.put(k, v);
+        }
+        return q;
+    }
+
+    /**
+     * Ein virtueller Thread je Anfrage, falls die Laufzeit das unterstützt (Java 21+).
+     * Das Projekt wird für Java 11 übersetzt, deshalb per Reflection.
+     */
+    static ExecutorService requestExecutor() {
+        try {
+            var m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            System.out.println("[INFO] HTTP: virtuelle Threads");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("[INFO] HTTP: keine virtuellen Threads (Java "
+                    + Runtime.version().feature() + "), Cached-Thread-Pool");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String mongoUri = getenvOr("MONGO_URI", "mongodb://localhost:27017");
+        String mongoDb  = getenvOr("MONGO_DB", "firma");
+        String url      = getenvOr("MARIADB_URL", "jdbc:mariadb://localhost:3306/firma");
+        String user     = getenvOr("MARIADB_USER", "root");
+        String pass     = getenvOr("MARIADB_PASS", "password");
+        int port        = Integer.parseInt(getenvOr("HTTP_PORT", "8080"));
+        int poolSize    = Integer.parseInt(getenvOr("JDBC_POOL_SIZE", "8"));
+
+        MongoMetrics mongoMetrics = new MongoMetrics(Boolean.parseBoolean(getenvOr("MONGO_METRICS_BYTES", "false")));
+        MongoClient client = MongoClients.create(mongoMetrics.settings(mongoUri));
+        ConnectionPool pool = new ConnectionPool(url, user, pass, poolSize, 30_000, 250);
+        try (Connection con = pool.getConnection()) {
+            Hello.ensureIndexes(con);
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("[WARN] Indizes nicht geprüft: " + e.getMessage());
+        }
+        var server = new QueryServer(new FirmaCrud(client.getDatabase(mongoDb)), pool, mongoMetrics);
+        HttpServer http = server.start(port);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            http.stop(1);
+            pool.close();
+            client.close();
+            System.out.print(server.metrics());
+        }));
+        System.out.println("[OK] HTTP-Server auf Port " + port);
+    }
+}
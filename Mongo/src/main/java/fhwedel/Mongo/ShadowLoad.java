@@ -0,0 +1,163 @@
+package fhwedel.Mongo;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Import über eine Schatten-Collection: die Daten werden in {@code <name>_staging}
+ * geladen und erst danach per renameCollection (dropTarget) gegen die Live-Collection
+ * getauscht. Leser sehen so nie eine leere oder halb gefüllte Collection.
+ * Der Fortschritt wird in der Collection {@value #CHECKPOINTS} festgehalten; nach
+ * einem Abbruch setzt der nächste Lauf hinter dem letzten vollständig geschriebenen
+ * Schlüssel fort, statt von vorn zu beginnen.
+ */
+final class ShadowLoad implements ImportTarget {
+
+    /** Namenszusatz der Schatten-Collections. */
+    static final String SUFFIX = "_staging";
+
+    /** Collection mit einem Fortschrittsdokument je Import. */
+    static final String CHECKPOINTS = "import_checkpoint";
+
+    private final MongoDatabase db;
+    private final String name;
+    private final String keyField;
+    private final MongoCollection<Document> staging;
+    private final MongoCollection<Document> checkpoints;
+
+    private final boolean resumed;
+    private final boolean loaded;
+    private final Object resumeAfter;
+
+    /**
+     * Bereitet die Schatten-Collection vor: ohne Checkpoint wird sie neu angelegt,
+     * mit Checkpoint wird der abgebrochene Lauf fortgesetzt.
+     * @param db Datenbank
+     * @param name Name der Live-Collection
+     * @param keyField eindeutiger fachlicher Schlüssel (pnr, abt_nr, geh_stufe)
+     */
+    ShadowLoad(MongoDatabase db, String name, String keyField) {
+        this.db          = db;
+        this.name        = name;
+        this.keyField    = keyField;
+        this.staging     = db.getCollection(name + SUFFIX);
+        this.checkpoints = db.getCollection(CHECKPOINTS);
+
+        Document cp = checkpoints.find(eq("_id", name)).first();
+        if (cp == null) {
+            staging.drop();
+            checkpoints.insertOne(new Document("_id", name)
+                    .append("key", null)
+                    .append("done", false)
+                    .append("started", new Date()));
+            resumed     = false;
+            loaded      = false;
+            resumeAfter = null;
+        } else {
+            resumed     = true;
+            loaded      = cp.getBoolean("done", false);
+            resumeAfter = cp.get("key");
+            // beim Fortsetzen werden Zeilen ggf. doppelt geschrieben: Upserts brauchen den Index
+            createIndex();
+            System.out.println("[SHADOW] " + name + ": setze fort "
+                    + (loaded ? "(bereits vollständig geladen)" : "nach " + keyField + "=" + resumeAfter));
+        }
+    }
+
+    /** @return true, wenn die Schatten-Collection bereits vollständig geladen ist */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public MongoCollection<Document> collection() {
+        return staging;
+    }
+
+    @Override
+    public WriteModel<Document> toWrite(Document doc) {
+        DeltaSync.withHash(doc);
+        if (!resumed) {
+            return new InsertOneModel<>(doc);
+        }
+        return new ReplaceOneModel<>(eq(keyField, doc.get(keyField)), doc, new ReplaceOptions().upsert(true));
+    }
+
+    @Override
+    public Object resumeAfter() {
+        return resumeAfter;
+    }
+
+    @Override
+    public void reached(Object key) {
+        checkpoints.updateOne(eq("_id", name), set("key", key));
+    }
+
+    /**
+     * Schließt das Laden ab: legt den eindeutigen Index und alle übrigen Indexe der
+     * Live-Collection an (nach dem Bulk-Load am günstigsten), damit sie den Tausch
+     * überstehen, und markiert den Checkpoint als vollständig.
+     */
+    void finish() {
+        createIndex();
+        copyLiveIndexes();
+        checkpoints.updateOne(eq("_id", name),
+                combine(set("done", true), set("finished", new Date())));
+    }
+
+    /**
+     * Tauscht die Schatten-Collection atomar gegen die Live-Collection.
+     * Der Checkpoint wird vorher entfernt: bricht der Lauf dazwischen ab, wird
+     * beim nächsten Mal neu geladen statt auf eine fehlende Schatten-Collection
+     * zuzugreifen.
+     */
+    void swap() {
+        checkpoints.deleteOne(eq("_id", name));
+        staging.renameCollection(new MongoNamespace(db.getName(), name),
+                new RenameCollectionOptions().dropTarget(true));
+        System.out.println("[SHADOW] " + name + SUFFIX + " -> " + name);
+    }
+
+    private void createIndex() {
+        staging.createIndex(Indexes.ascending(keyField), new IndexOptions().unique(true));
+    }
+
+    /**
+     * Übernimmt die Index-Spezifikationen der Live-Collection samt Optionen (partial,
+     * sparse, TTL, Collation ...) mit einem createIndexes; ohne Live-Collection nichts.
+     */
+    private void copyLiveIndexes() {
+        Document keyIndex = new Document(keyField, 1);
+        List<Document> specs = new ArrayList<>();
+        for (Document spec : db.getCollection(name).listIndexes()) {
+            Object key = spec.get("key");
+            if ("_id_".equals(spec.getString("name")) || keyIndex.equals(key)) {
+                continue;
+            }
+            spec.remove("v");
+            spec.remove("ns");
+            specs.add(spec);
+        }
+        if (!specs.isEmpty()) {
+            db.runCommand(new Document("createIndexes", name + SUFFIX).append("indexes", specs));
+            System.out.println("[SHADOW] " + name + SUFFIX + ": " + specs.size() + " Index(e) der Live-Collection übernommen");
+        }
+    }
+}
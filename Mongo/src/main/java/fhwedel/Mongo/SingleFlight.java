@@ -0,0 +1,69 @@
+package fhwedel.Mongo;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bündelt gleichzeitige identische Lesezugriffe: solange für einen Schlüssel ein
+ * Aufruf läuft, warten weitere Aufrufer auf dessen Ergebnis, statt selbst das
+ * Backend anzufragen. Es wird nichts über den Aufruf hinaus gecacht.
+ *
+ * @param <K> Schlüssel der Anfrage
+ * @param <V> Ergebnis
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls     = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param key Schlüssel der Anfrage
+     * @param loader Backend-Aufruf, wird je Schlüssel höchstens einmal gleichzeitig ausgeführt
+     * @return Ergebnis des (ggf. fremden) Aufrufs
+     * @throws Exception Fehler des Aufrufs, auch für die wartenden Aufrufer
+     */
+    V get(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                Throwable c = e.getCause();
+                if (c instanceof Error) {
+                    throw (Error) c;
+                }
+                throw c instanceof Exception ? (Exception) c : e;
+            }
+        }
+
+        calls.incrementAndGet();
+        try {
+            V v = loader.call();
+            mine.complete(v);
+            return v;
+        } catch (Throwable t) {
+            // auch bei Errors, sonst warten die gebündelten Aufrufer für immer
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** @return tatsächliche Backend-Aufrufe */
+    long calls() {
+        return calls.get();
+    }
+
+    /** @return Aufrufer, die ein laufendes Ergebnis mitbenutzt haben */
+    long coalesced() {
+        return coalesced.get();
+    }
+}
@@ -0,0 +1,57 @@
+package fhwedel.Mongo;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Ermittelt, bis zu welchem Schlüssel alle gelesenen Zeilen geschrieben sind.
+ * Der Leser meldet jede Zeile in Lesereihenfolge an, die Writer melden sie
+ * nach erfolgreichem bulkWrite in beliebiger Reihenfolge zurück. Die Marke
+ * rückt nur über eine lückenlose Folge erledigter Zeilen vor, ein Wiederanlauf
+ * ab der Marke verliert also keine Zeile. Im Speicher liegen nur Zeilen, die
+ * sich gerade in der Pipeline befinden.
+ */
+final class Watermark {
+
+    private final Consumer<Object> listener;
+
+    /** Lesereihenfolge → Schlüssel aller noch nicht abgeschlossenen Zeilen. */
+    private final TreeMap<Long, Object> inFlight = new TreeMap<>();
+    private final Set<Long> done = new HashSet<>();
+
+    /**
+     * @param listener erhält den Schlüssel, sobald die Marke vorrückt
+     */
+    Watermark(Consumer<Object> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Meldet eine gelesene Zeile an.
+     * @param seq fortlaufende Lesenummer
+     * @param key Schlüssel der Zeile
+     */
+    synchronized void register(long seq, Object key) {
+        inFlight.put(seq, key);
+    }
+
+    /**
+     * Meldet geschriebene (oder übersprungene) Zeilen zurück.
+     * @param seqs Lesenummern der abgeschlossenen Zeilen
+     */
+    synchronized void complete(Collection<Long> seqs) {
+        done.addAll(seqs);
+
+        Object reached = null;
+        while (!inFlight.isEmpty() && done.remove(inFlight.firstKey())) {
+            reached = inFlight.pollFirstEntry().getValue();
+        }
+        // unter der Sperre melden, damit die Marke beim Empfänger nie zurückläuft
+        if (reached != null) {
+            listener.accept(reached);
+        }
+    }
+}
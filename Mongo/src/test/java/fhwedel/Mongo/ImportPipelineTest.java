@@ -0,0 +1,117 @@
+package fhwedel.Mongo;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+
+public class ImportPipelineTest {
+
+    /** MongoCollection-Attrappe, die nur bulkWrite mitschreibt. */
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<Document> fakeCollection(Set<Object> written, boolean failOnWrite) {
+        return (MongoCollection<Document>) Proxy.newProxyInstance(
+                MongoCollection.class.getClassLoader(), new Class<?>[]{MongoCollection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getNamespace":
+                            return new MongoNamespace("test", "fake");
+                        case "bulkWrite":
+                            if (failOnWrite) {
+                                throw new IllegalStateException("Schreibfehler");
+                            }
+                            for (var m : (List<WriteModel<Document>>) args[0]) {
+                                written.add(((InsertOneModel<Document>) m).getDocument().get("nr"));
+                            }
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void testAlleZeilenWerdenGeschrieben() throws SQLException {
+        Set<Object> written = ConcurrentHashMap.newKeySet();
+        var opts = new ImportPipeline.Options(2, 3, 4, 7, false);
+
+        long n = new ImportPipeline<Integer>("test", fakeCollection(written, false), opts).run(
+                sink -> {
+                    for (int i = 0; i < 1000; i++) sink.accept(i);
+                },
+                i -> i % 10 == 0 ? null : new InsertOneModel<>(new Document("nr", i)));
+
+        assertEquals(900, n);
+        assertEquals(900, written.size());
+        assertFalse(written.contains(10));
+    }
+
+    @Test
+    public void testCheckpointLaeuftNurVorwaerts() throws SQLException {
+        Set<Object> written = ConcurrentHashMap.newKeySet();
+        List<Object> marken = new CopyOnWriteArrayList<>();
+        var opts = new ImportPipeline.Options(3, 4, 8, 5, false);
+
+        new ImportPipeline<Integer>("test", fakeCollection(written, false), opts).run(
+                sink -> {
+                    for (int i = 0; i < 500; i++) sink.accept(i);
+                },
+                i -> i % 7 == 0 ? null : new InsertOneModel<>(new Document("nr", i)),
+                i -> i,
+                marken::add);
+
+        assertFalse(marken.isEmpty());
+        assertEquals(499, marken.get(marken.size() - 1));
+        for (int i = 1; i < marken.size(); i++) {
+            assertTrue((Integer) marken.get(i - 1) < (Integer) marken.get(i));
+        }
+    }
+
+    @Test
+    public void testLesefehlerWirdWeitergereicht() {
+        Set<Object> written = ConcurrentHashMap.newKeySet();
+        var opts = new ImportPipeline.Options(1, 1, 2, 10, true);
+
+        try {
+            new ImportPipeline<Integer>("test", fakeCollection(written, false), opts).run(
+                    sink -> {
+                        sink.accept(1);
+                        throw new SQLException("Verbindung verloren");
+                    },
+                    i -> new InsertOneModel<>(new Document("nr", i)));
+            fail("SQLException erwartet");
+        } catch (SQLException e) {
+            assertEquals("Verbindung verloren", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSchreibfehlerBrichtLeserAb() throws SQLException {
+        Set<Object> written = ConcurrentHashMap.newKeySet();
+        var opts = new ImportPipeline.Options(1, 1, 2, 1, true);
+
+        try {
+            // der Leser würde ohne Abbruch an der vollen Queue hängen bleiben
+            new ImportPipeline<Integer>("test", fakeCollection(written, true), opts).run(
+                    sink -> {
+                        for (int i = 0; i < 1_000_000; i++) sink.accept(i);
+                    },
+                    i -> new InsertOneModel<>(new Document("nr", i)));
+            fail("IllegalStateException erwartet");
+        } catch (IllegalStateException e) {
+            assertEquals("Schreibfehler", e.getMessage());
+        }
+    }
+}
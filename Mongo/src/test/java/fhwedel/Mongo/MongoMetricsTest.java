@@ -0,0 +1,77 @@
+package fhwedel.Mongo;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.Test;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+public class MongoMetricsTest {
+
+    private static final ConnectionDescription CON =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    @Test
+    public void testFindWirdJeCollectionGezaehlt() {
+        MongoMetrics m = new MongoMetrics();
+
+        BsonDocument find = new BsonDocument("find", new BsonString("personal"))
+                .append("filter", new BsonDocument("pnr", new BsonInt32(417)));
+        m.commandStarted(new CommandStartedEvent(null, 1, 7, CON, "firma", "find", find));
+
+        BsonArray batch = new BsonArray();
+        for (int i = 0; i < 3; i++) batch.add(new BsonDocument("pnr", new BsonInt32(i)));
+        BsonDocument reply = new BsonDocument("cursor", new BsonDocument("firstBatch", batch))
+                .append("ok", new BsonInt32(1));
+        m.commandSucceeded(new CommandSucceededEvent(null, 1, 7, CON, "firma", "find", reply, 2_000_000));
+
+        String p = m.prometheus();
+        assertTrue(p, p.contains("mongo_command_duration_seconds_count{command=\"find\",collection=\"personal\"} 1"));
+        assertTrue(p, p.contains("mongo_command_documents_total{command=\"find\",collection=\"personal\"} 3"));
+        assertTrue(p, p.contains("mongo_command_failures_total{command=\"find\",collection=\"personal\"} 0"));
+        assertFalse(p, p.contains("mongo_command_bytes_total"));
+    }
+
+    @Test
+    public void testBytesNurWennEingeschaltet() {
+        MongoMetrics m = new MongoMetrics(true);
+
+        BsonDocument insert = new BsonDocument("insert", new BsonString("personal"))
+                .append("documents", new BsonArray(List.of(new BsonDocument("pnr", new BsonInt32(1)))));
+        m.commandStarted(new CommandStartedEvent(null, 1, 9, CON, "firma", "insert", insert));
+        m.commandSucceeded(new CommandSucceededEvent(null, 1, 9, CON, "firma", "insert",
+                new BsonDocument("n", new BsonInt32(1)).append("ok", new BsonInt32(1)), 1_000_000));
+
+        String p = m.prometheus();
+        assertTrue(p, p.contains("mongo_command_documents_total{command=\"insert\",collection=\"personal\"} 1"));
+        assertTrue(p, p.contains("mongo_command_bytes_total{command=\"insert\",collection=\"personal\",direction=\"out\"}"));
+        assertFalse(p, p.contains("direction=\"out\"} 0"));
+        assertFalse(p, p.contains("direction=\"in\"} 0"));
+    }
+
+    @Test
+    public void testFehlerUndGetMore() {
+        MongoMetrics m = new MongoMetrics();
+
+        BsonDocument getMore = new BsonDocument("getMore", new BsonInt32(42))
+                .append("collection", new BsonString("gehalt"));
+        m.commandStarted(new CommandStartedEvent(null, 1, 8, CON, "firma", "getMore", getMore));
+        m.commandFailed(new CommandFailedEvent(null, 1, 8, CON, "firma", "getMore", 1_000_000,
+                new IllegalStateException("weg")));
+
+        String p = m.prometheus();
+        assertTrue(p, p.contains("mongo_command_failures_total{command=\"getMore\",collection=\"gehalt\"} 1"));
+    }
+}
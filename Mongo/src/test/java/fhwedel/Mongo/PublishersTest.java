@@ -0,0 +1,65 @@
+package fhwedel.Mongo;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+public class PublishersTest {
+
+    /** Synchroner Publisher, der die Backpressure-Anfragen beachtet. */
+    private static Publisher<Integer> zahlen(int n, RuntimeException fehler, AtomicBoolean abgebrochen) {
+        return sub -> sub.onSubscribe(new Subscription() {
+            private int next;
+            private boolean fertig;
+
+            @Override
+            public void request(long k) {
+                for (long i = 0; i < k && !fertig; i++) {
+                    if (next == n) {
+                        fertig = true;
+                        if (fehler != null) sub.onError(fehler);
+                        else sub.onComplete();
+                        return;
+                    }
+                    sub.onNext(next++);
+                }
+            }
+
+            @Override
+            public void cancel() {
+                fertig = true;
+                abgebrochen.set(true);
+            }
+        });
+    }
+
+    @Test
+    public void testFirstLiefertErstesElementUndBrichtAb() {
+        AtomicBoolean abgebrochen = new AtomicBoolean();
+        assertEquals(Integer.valueOf(0), Publishers.first(zahlen(5, null, abgebrochen)).join());
+        assertTrue(abgebrochen.get());
+    }
+
+    @Test
+    public void testFirstLeerIstNull() {
+        assertNull(Publishers.first(zahlen(0, null, new AtomicBoolean())).join());
+    }
+
+    @Test
+    public void testToListUndFehler() {
+        assertEquals(List.of(0, 1, 2), Publishers.toList(zahlen(3, null, new AtomicBoolean())).join());
+
+        try {
+            Publishers.toList(zahlen(3, new IllegalStateException("weg"), new AtomicBoolean())).join();
+            fail("Fehler erwartet");
+        } catch (CompletionException e) {
+            assertEquals("weg", e.getCause().getMessage());
+        }
+    }
+}
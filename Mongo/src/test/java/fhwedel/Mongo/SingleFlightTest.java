@@ -0,0 +1,71 @@
+package fhwedel.Mongo;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    @Test(timeout = 10000)
+    public void testGleichzeitigeAufrufeWerdenGebuendelt() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>();
+        AtomicInteger backend = new AtomicInteger();
+        CountDownLatch gestartet = new CountDownLatch(1);
+        CountDownLatch freigabe  = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> res = new ArrayList<>();
+            res.add(pool.submit(() -> flight.get(417, () -> {
+                backend.incrementAndGet();
+                gestartet.countDown();
+                freigabe.await();
+                return "Krause";
+            })));
+            gestartet.await();
+            for (int i = 0; i < 7; i++) {
+                res.add(pool.submit(() -> flight.get(417, () -> {
+                    backend.incrementAndGet();
+                    return "doppelt";
+                })));
+            }
+
+            // warten, bis sich alle Aufrufer angehängt haben
+            while (flight.coalesced() < 7) {
+                Thread.sleep(1);
+            }
+            freigabe.countDown();
+
+            for (Future<String> f : res) {
+                assertEquals("Krause", f.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, backend.get());
+            assertEquals(1, flight.calls());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFehlerWirdNichtGemerkt() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>();
+        try {
+            flight.get(1, () -> {
+                throw new IllegalStateException("weg");
+            });
+            fail("Fehler erwartet");
+        } catch (IllegalStateException e) {
+            assertEquals("weg", e.getMessage());
+        }
+        assertEquals("ok", flight.get(1, () -> "ok"));
+    }
+}